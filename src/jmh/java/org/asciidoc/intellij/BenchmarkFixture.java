@@ -0,0 +1,32 @@
+package org.asciidoc.intellij;
+
+import com.intellij.testFramework.EdtTestUtil;
+import com.intellij.testFramework.fixtures.IdeaProjectTestFixture;
+import com.intellij.testFramework.fixtures.IdeaTestFixtureFactory;
+
+/**
+ * Starts a headless IDE with the plugin for benchmarks that need the application's services, the same way the
+ * tests do. JMH runs each benchmark in its own JVM, therefore there is at most one fixture per JVM.
+ */
+public final class BenchmarkFixture {
+
+  private static IdeaProjectTestFixture fixture;
+
+  private BenchmarkFixture() {
+  }
+
+  public static synchronized void setUp() throws Exception {
+    if (fixture == null) {
+      IdeaProjectTestFixture newFixture = IdeaTestFixtureFactory.getFixtureFactory().createLightFixtureBuilder().getFixture();
+      EdtTestUtil.runInEdtAndWait(newFixture::setUp);
+      fixture = newFixture;
+    }
+  }
+
+  public static synchronized void tearDown() throws Exception {
+    if (fixture != null) {
+      EdtTestUtil.runInEdtAndWait(fixture::tearDown);
+      fixture = null;
+    }
+  }
+}
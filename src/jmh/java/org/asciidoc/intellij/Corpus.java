@@ -0,0 +1,45 @@
+package org.asciidoc.intellij;
+
+import org.apache.commons.io.IOUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Documents used by the benchmarks. Names are resolved in the <code>corpus</code> folder of the benchmark
+ * resources, names starting with a slash are resolved on the class path.
+ */
+public final class Corpus {
+
+  private Corpus() {
+  }
+
+  public static String read(String name) throws IOException {
+    try (InputStream is = Corpus.class.getResourceAsStream(resource(name))) {
+      if (is == null) {
+        throw new IOException("document not found: " + name);
+      }
+      return IOUtils.toString(is, StandardCharsets.UTF_8);
+    }
+  }
+
+  /**
+   * Folder of the corpus, the base directory for images in the documents.
+   */
+  public static File folder() {
+    URL url = Corpus.class.getResource("/corpus/book.adoc");
+    try {
+      return new File(url.toURI()).getParentFile();
+    } catch (URISyntaxException e) {
+      throw new IllegalStateException("unable to locate corpus", e);
+    }
+  }
+
+  private static String resource(String name) {
+    return name.startsWith("/") ? name : "/corpus/" + name;
+  }
+}
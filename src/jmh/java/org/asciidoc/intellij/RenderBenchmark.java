@@ -0,0 +1,66 @@
+package org.asciidoc.intellij;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to render a document with {@link AsciiDoc#render(String, java.util.List)}.
+ * A cold render is the first render in a fresh JVM, including the start of the Asciidoctor runtime.
+ * A warm render reuses the runtime; each invocation changes the content to bypass the {@link RenderCache}.
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class RenderBenchmark {
+
+  @Param({"small.adoc", "book.adoc", "image-heavy.adoc", "table-heavy.adoc",
+    "/org/asciidoc/intellij/highlighting/SampleDocument.adoc"})
+  @SuppressWarnings("checkstyle:visibilitymodifier")
+  public String document;
+
+  private String text;
+  private AsciiDoc asciidoc;
+  private int invocation;
+
+  @Setup
+  public void setUp() throws Exception {
+    BenchmarkFixture.setUp();
+    text = Corpus.read(document);
+    asciidoc = new AsciiDoc(Corpus.folder().getPath(), Corpus.folder(), null, "benchmark");
+  }
+
+  @TearDown
+  public void tearDown() throws Exception {
+    BenchmarkFixture.tearDown();
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.SingleShotTime)
+  @Fork(5)
+  @Warmup(iterations = 0)
+  @Measurement(iterations = 1)
+  public String cold() {
+    return asciidoc.render(text, Collections.emptyList());
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @Fork(1)
+  @Warmup(iterations = 5, time = 5)
+  @Measurement(iterations = 5, time = 5)
+  public String warm() {
+    return asciidoc.render(text + "\n// " + ++invocation + "\n", Collections.emptyList());
+  }
+}
@@ -0,0 +1,86 @@
+package org.asciidoc.intellij.editor.javafx;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.asciidoc.intellij.Corpus;
+import org.asciidoctor.Asciidoctor;
+import org.asciidoctor.OptionsBuilder;
+import org.asciidoctor.SafeMode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to post-process the HTML of a rendered document for the JavaFX preview, see
+ * {@link JavaFxHtmlPanel#prepareHtml(String, Path, String, String, String)}. The images of the corpus are
+ * hashed on each run, as they are in the preview.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class PrepareHtmlBenchmark {
+
+  @Param({"small.adoc", "book.adoc", "image-heavy.adoc", "table-heavy.adoc"})
+  @SuppressWarnings("checkstyle:visibilitymodifier")
+  public String document;
+
+  private String html;
+  private String headLines;
+  private Path imagesPath;
+  private String base;
+
+  @Setup
+  public void setUp() throws IOException {
+    Asciidoctor asciidoctor = Asciidoctor.Factory.create();
+    try {
+      html = "<html><head></head><body><div id=\"content\">\n"
+        + asciidoctor.convert(Corpus.read(document), OptionsBuilder.options().safe(SafeMode.UNSAFE)
+        .backend("html5").headerFooter(false).baseDir(Corpus.folder()))
+        + "\n</div></body>";
+    } finally {
+      asciidoctor.shutdown();
+    }
+    Properties p = new Properties();
+    try (InputStream is = JavaFxHtmlPanel.class.getResourceAsStream("/META-INF/asciidoctorj-version.properties")) {
+      p.load(is);
+    }
+    try (InputStream is = JavaFxHtmlPanel.class.getResourceAsStream("/gems/asciidoctor-"
+      + p.getProperty("version.asciidoctor") + "/data/stylesheets/asciidoctor-default.css")) {
+      headLines = "<style>\n" + IOUtils.toString(is, StandardCharsets.UTF_8) + "\n</style>\n"
+        + "<link rel=\"stylesheet\" href=\"http://localhost:63342/styles/font-awesome/css/font-awesome.min.css\">";
+    }
+    imagesPath = Files.createTempDirectory("asciidoctor-benchmark");
+    base = Corpus.folder().getPath().replaceAll("\\\\", "/").replaceAll(":", "%3A");
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    FileUtils.deleteDirectory(imagesPath.toFile());
+  }
+
+  @Benchmark
+  public String prepareHtml() {
+    return JavaFxHtmlPanel.prepareHtml(html, imagesPath, base, headLines,
+      "<script src=\"http://localhost:63342/scripts/scrollToElement.js\"></script>\n");
+  }
+}
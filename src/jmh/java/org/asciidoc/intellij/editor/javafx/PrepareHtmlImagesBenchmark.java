@@ -0,0 +1,69 @@
+package org.asciidoc.intellij.editor.javafx;
+
+import org.apache.commons.io.FileUtils;
+import org.asciidoc.intellij.Corpus;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to post-process the HTML of a page with a growing number of images and highlighted code, in dark theme.
+ * The page repeats the images of the corpus. Divided by the number of images the time should stay about the same,
+ * as the HTML is rewritten in a single pass.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class PrepareHtmlImagesBenchmark {
+
+  @Param({"100", "1000", "10000"})
+  @SuppressWarnings("checkstyle:visibilitymodifier")
+  public int images;
+
+  private String html;
+  private Path imagesPath;
+  private String base;
+
+  @Setup
+  public void setUp() throws IOException {
+    StringBuilder sb = new StringBuilder("<html><head></head><body><div id=\"content\">\n");
+    for (int i = 0; i < images; ++i) {
+      sb.append("<div class=\"imageblock\"><div class=\"content\"><img src=\"images/image-").append(i % 8)
+        .append(".png\" alt=\"image ").append(i).append("\"></div></div>\n")
+        .append("<pre class=\"CodeRay highlight\"><code><span style=\"color:#080;font-weight:bold\">int</span> ")
+        .append("i = <span style=\"background-color:#fff0f0;color:#D20\">\"").append(i).append("\"</span>;")
+        .append("</code></pre>\n");
+    }
+    html = sb.append("</div></body></html>").toString();
+    imagesPath = Files.createTempDirectory("asciidoctor-benchmark");
+    base = Corpus.folder().getPath().replaceAll("\\\\", "/").replaceAll(":", "%3A");
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    FileUtils.deleteDirectory(imagesPath.toFile());
+  }
+
+  @Benchmark
+  public String process() {
+    return new HtmlPostProcessor(imagesPath, base, true, true).process(html, "<style></style>\n",
+      "<script src=\"http://localhost:63342/scripts/scrollToElement.js\"></script>\n");
+  }
+}
@@ -0,0 +1,84 @@
+package org.asciidoc.intellij.lexer;
+
+import com.intellij.lexer.Lexer;
+import org.asciidoc.intellij.Corpus;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the generated {@link _AsciiDocLexer} and of the {@link AsciiDocLexer} that merges its tokens.
+ * Besides the number of passes per second, JMH reports the secondary metric <code>megabytes</code> per second.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class LexerBenchmark {
+
+  @Param({"small.adoc", "book.adoc", "image-heavy.adoc", "table-heavy.adoc",
+    "/org/asciidoc/intellij/highlighting/SampleDocument.adoc"})
+  @SuppressWarnings("checkstyle:visibilitymodifier")
+  public String document;
+
+  private String text;
+  private double megabytes;
+
+  /**
+   * Counts the size of the lexed content, JMH reports it per second.
+   */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  public static class Throughput {
+    @SuppressWarnings("checkstyle:visibilitymodifier")
+    public double megabytes;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+      megabytes = 0;
+    }
+  }
+
+  @Setup
+  public void setUp() throws IOException {
+    text = Corpus.read(document);
+    megabytes = text.getBytes(StandardCharsets.UTF_8).length / (1024.0 * 1024.0);
+  }
+
+  @Benchmark
+  public int flexLexer(Throughput throughput) {
+    return lex(new AsciiDocLexerAdapter(), throughput);
+  }
+
+  @Benchmark
+  public int mergingLexer(Throughput throughput) {
+    return lex(new AsciiDocLexer(), throughput);
+  }
+
+  private int lex(Lexer lexer, Throughput throughput) {
+    lexer.start(text);
+    int tokens = 0;
+    while (lexer.getTokenType() != null) {
+      ++tokens;
+      lexer.advance();
+    }
+    throughput.megabytes += megabytes;
+    return tokens;
+  }
+}
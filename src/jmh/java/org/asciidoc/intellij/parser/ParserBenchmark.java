@@ -0,0 +1,60 @@
+package org.asciidoc.intellij.parser;
+
+import com.intellij.lang.ASTNode;
+import com.intellij.lang.PsiBuilder;
+import com.intellij.lang.PsiBuilderFactory;
+import org.asciidoc.intellij.BenchmarkFixture;
+import org.asciidoc.intellij.Corpus;
+import org.asciidoc.intellij.lexer.AsciiDocLexer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to parse a document with {@link AsciiDocParserImpl} into an AST, including lexing.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ParserBenchmark {
+
+  @Param({"small.adoc", "book.adoc", "image-heavy.adoc", "table-heavy.adoc",
+    "/org/asciidoc/intellij/highlighting/SampleDocument.adoc"})
+  @SuppressWarnings("checkstyle:visibilitymodifier")
+  public String document;
+
+  private String text;
+  private AsciiDocParserDefinition parserDefinition;
+
+  @Setup
+  public void setUp() throws Exception {
+    BenchmarkFixture.setUp();
+    text = Corpus.read(document);
+    parserDefinition = new AsciiDocParserDefinition();
+  }
+
+  @TearDown
+  public void tearDown() throws Exception {
+    BenchmarkFixture.tearDown();
+  }
+
+  @Benchmark
+  public ASTNode parse() {
+    PsiBuilder builder = PsiBuilderFactory.getInstance().createBuilder(parserDefinition, new AsciiDocLexer(), text);
+    return new AsciiDocParser().parse(parserDefinition.getFileNodeType(), builder);
+  }
+}
@@ -15,13 +15,18 @@
  */
 package org.asciidoc.intellij;
 
+import com.intellij.concurrency.JobScheduler;
 import com.intellij.notification.Notification;
 import com.intellij.notification.NotificationType;
 import com.intellij.notification.Notifications;
+import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.progress.ProcessCanceledException;
 import com.intellij.openapi.fileEditor.FileDocumentManager;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.LocalFileSystem;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.concurrency.AppExecutorUtil;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.io.output.ByteArrayOutputStream;
 import org.apache.geronimo.gshell.io.SystemOutputHijacker;
@@ -29,19 +34,27 @@ import org.asciidoc.intellij.actions.asciidoc.AsciiDocAction;
 import org.asciidoc.intellij.editor.AsciiDocPreviewEditor;
 import org.asciidoc.intellij.editor.javafx.JavaFxHtmlPanelProvider;
 import org.asciidoc.intellij.settings.AsciiDocApplicationSettings;
+import org.asciidoc.intellij.worker.RenderWorkerPool;
+import org.asciidoc.intellij.worker.RenderWorkerProtocol;
 import org.asciidoctor.Asciidoctor;
 import org.asciidoctor.Attributes;
 import org.asciidoctor.AttributesBuilder;
+import org.asciidoctor.Options;
 import org.asciidoctor.OptionsBuilder;
 import org.asciidoctor.SafeMode;
+import org.asciidoctor.jruby.internal.JRubyAsciidoctor;
 import org.asciidoctor.log.LogHandler;
 import org.asciidoctor.log.LogRecord;
 import org.asciidoctor.log.Severity;
 import org.jcodings.EncodingDB;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.jruby.Ruby;
+import org.jruby.RubyThread;
 import org.jruby.exceptions.MainExitException;
 import org.jruby.platform.Platform;
+import org.jruby.runtime.Block;
+import org.jruby.runtime.builtin.IRubyObject;
 import org.jruby.util.ByteList;
 import org.jruby.util.SafePropertyAccessor;
 
@@ -54,13 +67,21 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.ServiceConfigurationError;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.function.IntConsumer;
+import java.util.function.Supplier;
 import java.util.logging.Logger;
 
 /**
@@ -68,17 +89,76 @@ import java.util.logging.Logger;
  */
 public class AsciiDoc {
 
-  private static Asciidoctor asciidoctor;
+  /**
+   * Instances of Asciidoctor, keyed by the hash of the extensions loaded.
+   */
+  private static final AsciidoctorPool POOL = new AsciidoctorPool(AsciidoctorPool.defaultSize());
+
+  /**
+   * Results of previous renders, shared between preview and annotator.
+   */
+  private static final RenderCache CACHE = new RenderCache(RenderCache.defaultSize());
+
+  /**
+   * Separate processes to render documents when enabled in the settings.
+   */
+  private static final RenderWorkerPool WORKERS = RenderWorkerPool.createDefault();
+
+  /**
+   * Number of diagrams generated in parallel ahead of a render, can be overridden with the system property
+   * <code>asciidoc.diagram.threads</code>. Less than two disables the generation ahead of the render.
+   */
+  private static final int DIAGRAM_THREADS = Integer.getInteger("asciidoc.diagram.threads",
+    Runtime.getRuntime().availableProcessors());
+
+  private static final ExecutorService DIAGRAM_EXECUTOR =
+    AppExecutorUtil.createBoundedApplicationPoolExecutor("AsciiDoc diagrams", Math.max(DIAGRAM_THREADS, 1));
+
+  /**
+   * Keys of diagrams generated by {@link #renderDiagrams(String, Supplier, Map, List)}, so that unchanged diagrams
+   * are not converted again.
+   */
+  private static final Set<String> RENDERED_DIAGRAMS = Collections.synchronizedSet(Collections.newSetFromMap(
+    new LinkedHashMap<String, Boolean>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+        return size() > 1000;
+      }
+    }));
+
+  /**
+   * Exercises the common parts of the converter, but no diagrams as they would start external processes.
+   */
+  private static final String WARMUP_DOCUMENT = "= Warm-up\n:icons: font\n\n"
+    + "Preamble with *bold*, _italic_, `mono` and a https://asciidoctor.org[link].\n\n"
+    + "== Section\n\n* item\n* item\n\n"
+    + "[source,java]\n----\npublic class Test {\n}\n----\n\n"
+    + "NOTE: Admonition.\n\n"
+    + "|===\n|a |b\n|c |d\n|===\n";
+
+  /**
+   * Attribute to tell the scripts loaded in {@link #createInstance(List)} that the document is only validated.
+   */
+  private static final String VALIDATE_ONLY = "intellij-validate-only";
+
+  /**
+   * Attribute to tell the scripts loaded in {@link #createInstance(List)} that the document is exported, therefore
+   * the changes they make for the preview must not be applied.
+   */
+  private static final String EXPORT = "intellij-export";
 
   private com.intellij.openapi.diagnostic.Logger log =
     com.intellij.openapi.diagnostic.Logger.getInstance(AsciiDoc.class);
 
   static {
     SystemOutputHijacker.install();
+    long maxIdleMillis = AsciidoctorPool.defaultMaxIdleMillis();
+    JobScheduler.getScheduler().scheduleWithFixedDelay(() -> {
+      POOL.evictIdleSince(System.currentTimeMillis() - maxIdleMillis);
+      WORKERS.evictIdleSince(System.currentTimeMillis() - maxIdleMillis);
+    }, 1, 1, TimeUnit.MINUTES);
   }
 
-  private static String hash = "";
-
   /**
    * Base directory to look up includes.
    */
@@ -90,126 +170,189 @@ public class AsciiDoc {
   private final Path imagesPath;
   private final String name;
   private final String projectBasePath;
+  @Nullable
+  private final Project project;
+
+  private final Object conversionLock = new Object();
+
+  /**
+   * Ruby thread running the current conversion, <code>null</code> if there is no conversion running.
+   */
+  private RubyThread conversionThread;
+  private boolean cancelled;
+
+  /**
+   * The interrupt of a cancelled conversion couldn't be removed, the instance must not be used again.
+   */
+  private boolean unusable;
 
   public AsciiDoc(String projectBasePath, File fileBaseDir, Path imagesPath, String name) {
     this.projectBasePath = projectBasePath;
     this.fileBaseDir = fileBaseDir;
     this.imagesPath = imagesPath;
     this.name = name;
+    this.project = null;
+  }
+
+  /**
+   * Use the cached fingerprint of the project's extensions instead of hashing the extensions on each render.
+   */
+  public AsciiDoc(@NotNull Project project, File fileBaseDir, Path imagesPath, String name) {
+    this.projectBasePath = project.getBasePath();
+    this.fileBaseDir = fileBaseDir;
+    this.imagesPath = imagesPath;
+    this.name = name;
+    this.project = project;
+  }
+
+  /**
+   * The file that is rendered, or <code>null</code> if it isn't known.
+   */
+  @Nullable
+  private VirtualFile file() {
+    if (project == null || ApplicationManager.getApplication() == null) {
+      return null;
+    }
+    return LocalFileSystem.getInstance().findFileByIoFile(new File(fileBaseDir, name));
   }
 
-  private void initWithExtensions(List<String> extensions) {
+  /**
+   * Determine the extensions that will be loaded for this project.
+   * Will be empty unless the user enabled the extensions for the project.
+   */
+  private List<String> activeExtensions(List<String> extensions) {
+    AsciiDocApplicationSettings asciiDocApplicationSettings = AsciiDocApplicationSettings.getInstance();
+    if (extensions.size() > 0) {
+      asciiDocApplicationSettings.setExtensionsPresent(projectBasePath, true);
+    }
+    if (Boolean.TRUE.equals(asciiDocApplicationSettings.getExtensionsEnabled(projectBasePath))) {
+      return extensions;
+    } else {
+      return Collections.emptyList();
+    }
+  }
+
+  private Asciidoctor createInstance(List<String> extensions) {
+    // creating instances is rare, serialize it as it temporarily changes global system properties
     synchronized (AsciiDoc.class) {
-      boolean extensionsEnabled;
-      AsciiDocApplicationSettings asciiDocApplicationSettings = AsciiDocApplicationSettings.getInstance();
-      if (extensions.size() > 0) {
-        asciiDocApplicationSettings.setExtensionsPresent(projectBasePath, true);
-      }
-      String md;
-      if (Boolean.TRUE.equals(asciiDocApplicationSettings.getExtensionsEnabled(projectBasePath))) {
-        extensionsEnabled = true;
-        md = calcMd(projectBasePath, extensions);
-      } else {
-        extensionsEnabled = false;
-        md = calcMd(projectBasePath, Collections.EMPTY_LIST);
+      Asciidoctor asciidoctor = null;
+      ClassLoader old = Thread.currentThread().getContextClassLoader();
+      ByteArrayOutputStream boasOut = new ByteArrayOutputStream();
+      ByteArrayOutputStream boasErr = new ByteArrayOutputStream();
+      SystemOutputHijacker.register(new PrintStream(boasOut), new PrintStream(boasErr));
+      LogHandler logHandler = new IntellijLogHandler("initialize");
+      String oldEncoding = null;
+      if (Platform.IS_WINDOWS) {
+        /* There is an initialization procedure in Ruby.java that will abort
+           when the encoding in file.encoding is not known to JRuby. Therefore default to UTF-8 in this case
+           as a most sensible default. */
+        String encoding = System.getProperty("file.encoding", "UTF-8");
+        ByteList bytes = ByteList.create(encoding);
+        EncodingDB.Entry entry = EncodingDB.getEncodings().get(bytes.getUnsafeBytes(), bytes.getBegin(), bytes.getBegin() + bytes.getRealSize());
+        if (entry == null) {
+          entry = EncodingDB.getAliases().get(bytes.getUnsafeBytes(), bytes.getBegin(), bytes.getBegin() + bytes.getRealSize());
+        }
+        if (entry == null) {
+          // this happes for example with -Dfile.encoding=MS949 (Korean?)
+          oldEncoding = encoding;
+          log.warn("unsupported encoding " + encoding + " in JRuby, defaulting to UTF-8");
+          System.setProperty("file.encoding", "UTF-8");
+        }
       }
-      if (!md.equals(hash)) {
+      try {
+        Thread.currentThread().setContextClassLoader(AsciiDocAction.class.getClassLoader());
+        asciidoctor = Asciidoctor.Factory.create();
+        asciidoctor.registerLogHandler(logHandler);
+        // disable JUL logging of captured messages
+        // https://github.com/asciidoctor/asciidoctorj/issues/669
+        Logger.getLogger("asciidoctor").setUseParentHandlers(false);
+        AsciidoctorScripts.register(asciidoctor, extensions);
+        asciidoctor.javaExtensionRegistry().includeProcessor(new DocumentIncludeProcessor());
+        return asciidoctor;
+      } catch (RuntimeException | Error e) {
         if (asciidoctor != null) {
           asciidoctor.shutdown();
           asciidoctor = null;
         }
-        ClassLoader old = Thread.currentThread().getContextClassLoader();
-        ByteArrayOutputStream boasOut = new ByteArrayOutputStream();
-        ByteArrayOutputStream boasErr = new ByteArrayOutputStream();
-        SystemOutputHijacker.register(new PrintStream(boasOut), new PrintStream(boasErr));
-        LogHandler logHandler = new IntellijLogHandler("initialize");
-        String oldEncoding = null;
-        if (Platform.IS_WINDOWS) {
-          /* There is an initialization procedure in Ruby.java that will abort
-             when the encoding in file.encoding is not known to JRuby. Therefore default to UTF-8 in this case
-             as a most sensible default. */
-          String encoding = System.getProperty("file.encoding", "UTF-8");
-          ByteList bytes = ByteList.create(encoding);
-          EncodingDB.Entry entry = EncodingDB.getEncodings().get(bytes.getUnsafeBytes(), bytes.getBegin(), bytes.getBegin() + bytes.getRealSize());
-          if (entry == null) {
-            entry = EncodingDB.getAliases().get(bytes.getUnsafeBytes(), bytes.getBegin(), bytes.getBegin() + bytes.getRealSize());
-          }
-          if (entry == null) {
-            // this happes for example with -Dfile.encoding=MS949 (Korean?)
-            oldEncoding = encoding;
-            log.warn("unsupported encoding " + encoding + " in JRuby, defaulting to UTF-8");
-            System.setProperty("file.encoding", "UTF-8");
-          }
+        throw e;
+      } finally {
+        if (oldEncoding != null) {
+          System.setProperty("file.encoding", oldEncoding);
         }
-        try {
-          Thread.currentThread().setContextClassLoader(AsciiDocAction.class.getClassLoader());
-          asciidoctor = Asciidoctor.Factory.create();
-          asciidoctor.registerLogHandler(logHandler);
-          // disable JUL logging of captured messages
-          // https://github.com/asciidoctor/asciidoctorj/issues/669
-          Logger.getLogger("asciidoctor").setUseParentHandlers(false);
-          asciidoctor.requireLibrary("asciidoctor-diagram");
-          InputStream is = this.getClass().getResourceAsStream("/sourceline-treeprocessor.rb");
-          if (is == null) {
-            throw new RuntimeException("unable to load script sourceline-treeprocessor.rb");
-          }
-          asciidoctor.rubyExtensionRegistry().loadClass(is).treeprocessor("SourceLineTreeProcessor");
-          is = this.getClass().getResourceAsStream("/plantuml-png-patch.rb");
-          if (is == null) {
-            throw new RuntimeException("unable to load script plantuml-png-patch.rb");
-          }
-          if (extensionsEnabled) {
-            for (String extension : extensions) {
-              asciidoctor.rubyExtensionRegistry().requireLibrary(extension);
-            }
-          }
-          asciidoctor.rubyExtensionRegistry().loadClass(is);
-          hash = md;
-        } finally {
-          if (oldEncoding != null) {
-            System.setProperty("file.encoding", oldEncoding);
-          }
-          if (asciidoctor != null) {
-            asciidoctor.unregisterLogHandler(logHandler);
-          }
-          SystemOutputHijacker.deregister();
-          notify(boasOut, boasErr, Collections.EMPTY_LIST);
-          Thread.currentThread().setContextClassLoader(old);
+        if (asciidoctor != null) {
+          asciidoctor.unregisterLogHandler(logHandler);
         }
+        SystemOutputHijacker.deregister();
+        notify(boasOut, boasErr, Collections.EMPTY_LIST);
+        Thread.currentThread().setContextClassLoader(old);
       }
     }
   }
 
+  private Asciidoctor timedCreateInstance(List<String> extensions) {
+    long start = System.nanoTime();
+    try {
+      return createInstance(extensions);
+    } finally {
+      RenderTimings.getInstance().recordSince(name, RenderTimings.Stage.INIT, start);
+    }
+  }
+
+  /**
+   * Create the Asciidoctor instance for the extensions ahead of the first render and run a throwaway conversion
+   * to warm up the JRuby JIT. The instance is returned to the pool to serve the first preview.
+   */
+  public void prewarm(List<String> extensions) {
+    long start = System.currentTimeMillis();
+    List<String> activeExtensions = activeExtensions(extensions);
+    String md = calcMd(projectBasePath, activeExtensions);
+    if (isRenderInWorker()) {
+      try {
+        WORKERS.render(new RenderWorkerProtocol.Request(RenderWorkerProtocol.CONVERT, md, activeExtensions,
+          getDefaultOptions(Collections.emptyMap()), WARMUP_DOCUMENT));
+      } catch (IOException e) {
+        throw new RuntimeException("unable to start worker", e);
+      }
+      log.info("warm-up of Asciidoctor worker took " + (System.currentTimeMillis() - start) + " ms");
+      return;
+    }
+    Asciidoctor asciidoctor = POOL.checkout(md, () -> timedCreateInstance(activeExtensions));
+    ClassLoader old = Thread.currentThread().getContextClassLoader();
+    try {
+      Thread.currentThread().setContextClassLoader(AsciiDocAction.class.getClassLoader());
+      asciidoctor.convert(WARMUP_DOCUMENT, getDefaultOptions(Collections.emptyMap()));
+    } finally {
+      Thread.currentThread().setContextClassLoader(old);
+      POOL.checkin(md, asciidoctor);
+    }
+    log.info("warm-up of Asciidoctor runtime took " + (System.currentTimeMillis() - start) + " ms");
+  }
+
   /**
    * Calculate a hash for the extensions.
    * Hash will change if the project has been changed, of the contents of files have changed.
-   * TODO: hash will not change if files referenced in extensions changed.
+   * For a project the hash is maintained by {@link AsciiDocExtensionService}, which also tracks the files
+   * the extensions require.
    */
   private String calcMd(String projectBasePath, List<String> extensions) {
-    try {
-      MessageDigest md = MessageDigest.getInstance("MD5");
-      md.update(projectBasePath.getBytes(StandardCharsets.UTF_8));
-      for (String s : extensions) {
+    if (project != null && !extensions.isEmpty()) {
+      return AsciiDocExtensionService.getInstance(project).getFingerprint();
+    }
+    MessageDigest md = Md5.create();
+    md.update(projectBasePath.getBytes(StandardCharsets.UTF_8));
+    for (String s : extensions) {
+      try {
+        InputStream is = new FileInputStream(s);
         try {
-          InputStream is = new FileInputStream(s);
-          try {
-            md.update(IOUtils.toByteArray(is));
-          } finally {
-            IOUtils.closeQuietly(is);
-          }
-        } catch (IOException e) {
-          throw new RuntimeException("unable to read file", e);
+          md.update(IOUtils.toByteArray(is));
+        } finally {
+          IOUtils.closeQuietly(is);
         }
+      } catch (IOException e) {
+        throw new RuntimeException("unable to read file", e);
       }
-      byte[] mdbytes = md.digest();
-      StringBuilder sb = new StringBuilder();
-      for (byte mdbyte : mdbytes) {
-        sb.append(Integer.toString((mdbyte & 0xff) + 0x100, 16).substring(1));
-      }
-      return sb.toString();
-    } catch (NoSuchAlgorithmException e) {
-      throw new RuntimeException("unknown hash", e);
     }
+    return Md5.hex(md.digest());
   }
 
   private void notify(ByteArrayOutputStream boasOut, ByteArrayOutputStream boasErr, List<LogRecord> logRecords) {
@@ -248,55 +391,49 @@ public class AsciiDoc {
 
   @NotNull
   public static String prependConfig(Document document, Project project, IntConsumer offset) {
-    VirtualFile currentFile = FileDocumentManager.getInstance().getFile(document);
-    StringBuilder tempContent = new StringBuilder();
-    VirtualFile folder = currentFile.getParent();
-    if (folder != null) {
-      while (true) {
-        VirtualFile configFile = folder.findChild(".asciidoctorconfig");
-        if (configFile != null &&
-          !currentFile.equals(configFile)) {
-          Document config = FileDocumentManager.getInstance().getDocument(configFile);
-          if (config != null) {
-            // prepend the new config, followed by two newlines to avoid sticking-together content
-            tempContent.insert(0, "\n\n");
-            tempContent.insert(0, config.getText());
-          }
-        }
-        if (folder.getPath().equals(project.getBasePath())) {
-          break;
-        }
-        folder = folder.getParent();
-        if (folder == null) {
-          break;
-        }
-      }
+    return prependConfig(FileDocumentManager.getInstance().getFile(document), document.getText(), project, offset);
+  }
+
+  /**
+   * Prepend the configuration to the text of a file that is not necessarily open in an editor.
+   */
+  @NotNull
+  public static String prependConfig(VirtualFile file, String text, Project project, IntConsumer offset) {
+    AsciiDocConfigService.Config config = AsciiDocConfigService.getInstance(project).getConfig(file);
+    if (config.getAttributes() != null && isConfigAsAttributes()) {
+      // the configuration is passed as attributes, see getConfigAttributes()
+      offset.accept(0);
+      return text;
     }
-    int offsetLineNo = (int) tempContent.chars().filter(i -> i == '\n').count();
-    tempContent.append(document.getText());
-    offset.accept(offsetLineNo);
-    return tempContent.toString();
+    offset.accept(config.getLineCount());
+    return config.getText() + text;
   }
 
+  /**
+   * Attributes from the <code>.asciidoctorconfig</code> files when they are passed as attributes instead of
+   * being prepended to the content, see {@link #prependConfig(Document, Project, IntConsumer)}.
+   */
   @NotNull
-  public static List<String> getExtensions(Project project) {
-    VirtualFile lib = project.getBaseDir().findChild(".asciidoctor");
-    if (lib != null) {
-      lib = lib.findChild("lib");
-    }
-
-    List<String> extensions = new ArrayList<>();
-    if (lib != null) {
-      for (VirtualFile vf : lib.getChildren()) {
-        if ("rb".equals(vf.getExtension())) {
-          Document extension = FileDocumentManager.getInstance().getDocument(vf);
-          if (extension != null) {
-            extensions.add(vf.getCanonicalPath());
-          }
-        }
-      }
+  public static Map<String, Object> getConfigAttributes(Document document, Project project) {
+    return getConfigAttributes(FileDocumentManager.getInstance().getFile(document), project);
+  }
+
+  @NotNull
+  public static Map<String, Object> getConfigAttributes(VirtualFile file, Project project) {
+    Map<String, Object> attributes = AsciiDocConfigService.getInstance(project).getConfig(file).getAttributes();
+    if (attributes != null && isConfigAsAttributes()) {
+      return attributes;
     }
-    return extensions;
+    return Collections.emptyMap();
+  }
+
+  private static boolean isConfigAsAttributes() {
+    return AsciiDocApplicationSettings.getInstance().getAsciiDocPreviewSettings().isConfigAsAttributes();
+  }
+
+  @NotNull
+  public static List<String> getExtensions(Project project) {
+    return AsciiDocExtensionService.getInstance(project).getExtensions();
   }
 
   @FunctionalInterface
@@ -305,14 +442,87 @@ public class AsciiDoc {
   }
 
   public String render(String text, List<String> extensions) {
-    return render(text, extensions, this::notify);
+    return render(text, Collections.emptyMap(), extensions);
+  }
+
+  public String render(String text, Map<String, Object> attributes, List<String> extensions) {
+    return render(text, attributes, extensions, this::notify);
   }
 
   public String render(String text, List<String> extensions, Notifier notifier) {
-    synchronized (AsciiDoc.class) {
-      CollectingLogHandler logHandler = new CollectingLogHandler();
+    return render(text, Collections.emptyMap(), extensions, notifier);
+  }
+
+  public String render(String text, Map<String, Object> attributes, List<String> extensions, Notifier notifier) {
+    return render(text, attributes, extensions, notifier, true, true);
+  }
+
+  /**
+   * Render without reusing the result of a previous render, as the files the render writes are needed.
+   */
+  public String renderUncached(String text, List<String> extensions) {
+    return render(text, Collections.emptyMap(), extensions, this::notify, true, false);
+  }
+
+  /**
+   * Collect the messages Asciidoctor logs for the document when the HTML is not needed.
+   * Will reuse the result of a previous render of the same content, independent of the folder the images
+   * have been rendered to. Otherwise the document is only loaded and its blocks are substituted, which logs the
+   * same messages for includes and attributes, but doesn't convert it to HTML or generate diagrams.
+   */
+  public void validate(String text, Map<String, Object> attributes, List<String> extensions, Notifier notifier) {
+    render(text, attributes, extensions, notifier, false, true);
+  }
+
+  /**
+   * @param useCache return the result of a previous render if there is one
+   */
+  private String render(String text, Map<String, Object> attributes, List<String> extensions, Notifier notifier,
+                        boolean needsHtml, boolean useCache) {
+    CollectingLogHandler logHandler = new CollectingLogHandler();
+    try {
+      long start = System.nanoTime();
+      List<String> activeExtensions = activeExtensions(extensions);
+      String md = calcMd(projectBasePath, activeExtensions);
+      RenderTimings.getInstance().recordSince(name, RenderTimings.Stage.FINGERPRINT, start);
+      Map<String, Object> options = getDefaultOptions(attributes);
+      String outdir = outdir(options);
+      // included files are read from the IDE, therefore any change in the VFS or in an unsaved included document
+      // might change the result
+      long stamp = DocumentIncludeProcessor.modificationStamp(project, file());
+      String cacheKey = RenderCache.key(text, md, options, stamp);
+      RenderCache.Entry cached = useCache ? CACHE.peek(cacheKey, needsHtml ? outdir : null) : null;
+      if (cached == null && !needsHtml) {
+        options = getValidationOptions(attributes);
+        outdir = null;
+        cacheKey = RenderCache.key(text, md, options, stamp);
+        cached = useCache ? CACHE.peek(cacheKey, null) : null;
+      }
+      if (useCache) {
+        // a validation tries two keys, count it once
+        CACHE.record(cached != null);
+      }
+      if (cached != null) {
+        ByteArrayOutputStream boasOut = new ByteArrayOutputStream();
+        ByteArrayOutputStream boasErr = new ByteArrayOutputStream();
+        boasOut.write(cached.getOut().getBytes(StandardCharsets.UTF_8));
+        boasErr.write(cached.getErr().getBytes(StandardCharsets.UTF_8));
+        notifier.notify(boasOut, boasErr, cached.getLogRecords());
+        return cached.getHtml();
+      }
+      RenderTimings.Stage stage = needsHtml ? RenderTimings.Stage.CONVERT : RenderTimings.Stage.VALIDATE;
+      if (isRenderInWorker()) {
+        start = System.nanoTime();
+        try {
+          return renderInWorker(new RenderWorkerProtocol.Request(
+            needsHtml ? RenderWorkerProtocol.CONVERT : RenderWorkerProtocol.LOAD, md, activeExtensions, options, text),
+            cacheKey, outdir, notifier);
+        } finally {
+          RenderTimings.getInstance().recordSince(name, stage, start);
+        }
+      }
+      Asciidoctor asciidoctor = POOL.checkout(md, () -> timedCreateInstance(activeExtensions));
       try {
-        initWithExtensions(extensions);
         ClassLoader old = Thread.currentThread().getContextClassLoader();
         ByteArrayOutputStream boasOut = new ByteArrayOutputStream();
         ByteArrayOutputStream boasErr = new ByteArrayOutputStream();
@@ -320,37 +530,363 @@ public class AsciiDoc {
         asciidoctor.registerLogHandler(logHandler);
         try {
           Thread.currentThread().setContextClassLoader(AsciiDocAction.class.getClassLoader());
-          return "<div id=\"content\">\n" + asciidoctor.convert(text, getDefaultOptions()) + "\n</div>";
+          Map<String, Object> effectiveOptions = options;
+          String html;
+          start = System.nanoTime();
+          if (needsHtml) {
+            html = "<div id=\"content\">\n" + runCancellable(asciidoctor,
+              () -> DocumentIncludeProcessor.withMemo(text, () -> asciidoctor.convert(text, effectiveOptions)))
+              + "\n</div>";
+          } else {
+            runCancellable(asciidoctor, () -> DocumentIncludeProcessor.withMemo(text, () -> asciidoctor.load(text, effectiveOptions)));
+            html = "";
+          }
+          RenderTimings.getInstance().recordSince(name, stage, start);
+          CACHE.put(cacheKey, new RenderCache.Entry(html, logHandler.getLogRecords(),
+            boasOut.toString(StandardCharsets.UTF_8.name()), boasErr.toString(StandardCharsets.UTF_8.name()), outdir));
+          return html;
         } finally {
           asciidoctor.unregisterLogHandler(logHandler);
           SystemOutputHijacker.deregister();
           notifier.notify(boasOut, boasErr, logHandler.getLogRecords());
           Thread.currentThread().setContextClassLoader(old);
         }
-      } catch (Exception | ServiceConfigurationError ex) {
-        log.warn("unable to render AsciiDoc document", ex);
-        logHandler.log(new LogRecord(Severity.FATAL, ex.getMessage()));
-        StringBuilder response = new StringBuilder();
-        response.append("unable to render AsciiDoc document");
-        Throwable t = ex;
-        do {
-          response.append("<p>").append(t.getClass().getCanonicalName()).append(": ").append(t.getMessage());
-          if (t instanceof MainExitException && t.getMessage().startsWith("unknown encoding name")) {
-            response.append("<p>Either your local encoding is not supported by JRuby, or you passed an unrecognized value to the Java property 'file.encoding' either in the IntelliJ options file or via the JAVA_TOOL_OPTION environment variable.");
-            String property = SafePropertyAccessor.getProperty("file.encoding", null);
-            response.append("<p>encoding passed by system property 'file.encoding': ").append(property);
-            response.append("<p>available encodings (excuding aliases): ");
-            EncodingDB.getEncodings().forEach(entry -> response.append(entry.getEncoding().getCharsetName()).append(" "));
+      } finally {
+        checkin(md, asciidoctor);
+      }
+    } catch (ProcessCanceledException ex) {
+      throw ex;
+    } catch (Exception | ServiceConfigurationError ex) {
+      log.warn("unable to render AsciiDoc document", ex);
+      logHandler.log(new LogRecord(Severity.FATAL, ex.getMessage()));
+      StringBuilder response = new StringBuilder();
+      response.append("unable to render AsciiDoc document");
+      Throwable t = ex;
+      do {
+        response.append("<p>").append(t.getClass().getCanonicalName()).append(": ").append(t.getMessage());
+        if (t instanceof MainExitException && t.getMessage().startsWith("unknown encoding name")) {
+          response.append("<p>Either your local encoding is not supported by JRuby, or you passed an unrecognized value to the Java property 'file.encoding' either in the IntelliJ options file or via the JAVA_TOOL_OPTION environment variable.");
+          String property = SafePropertyAccessor.getProperty("file.encoding", null);
+          response.append("<p>encoding passed by system property 'file.encoding': ").append(property);
+          response.append("<p>available encodings (excuding aliases): ");
+          EncodingDB.getEncodings().forEach(entry -> response.append(entry.getEncoding().getCharsetName()).append(" "));
+        }
+        t = t.getCause();
+      } while (t != null);
+      response.append("<p>(the full exception stack trace is available in the IDE's log file. Visit menu item 'Help | Show Log in Explorer' to see the log)");
+      return response.toString();
+    }
+  }
+
+  /**
+   * Generate the images of the diagrams of a document in parallel before the document is rendered, see
+   * {@link DiagramPrepass}. asciidoctor-diagram keeps a checksum of each image in the output folder, therefore
+   * the render of the full document will use these images instead of generating them one after the other.
+   * Each worker converts its share of the diagrams with an instance of Asciidoctor it checked out for its own use.
+   * The attributes set in the header of the document, including those of included files, are passed to each
+   * diagram, so that it is generated with the same options and to the same folder as in the full document.
+   * Only diagrams whose text or options changed since they have been generated last are converted.
+   * Failures are ignored, the render will report them.
+   *
+   * @param text     the document, its header provides the attributes for the diagrams
+   * @param diagrams finds the diagrams of the document, only called if they will be generated ahead of the render
+   */
+  public void renderDiagrams(String text, Supplier<List<String>> diagrams, Map<String, Object> attributes,
+                             List<String> extensions) {
+    if (DIAGRAM_THREADS < 2 || isRenderInWorker()) {
+      return;
+    }
+    List<String> found = diagrams.get();
+    if (found.size() < 2) {
+      return;
+    }
+    long start = System.nanoTime();
+    List<String> activeExtensions = activeExtensions(extensions);
+    String md = calcMd(projectBasePath, activeExtensions);
+    Map<String, Object> options = getDefaultOptions(attributes);
+    if (outdir(options) == null) {
+      // images are not written to a folder where the render would find them
+      return;
+    }
+    Map<String, String> pending = new LinkedHashMap<>();
+    for (String diagram : found) {
+      String key = RenderCache.key(diagram, md, options, 0);
+      if (!RENDERED_DIAGRAMS.contains(key)) {
+        pending.put(key, diagram);
+      }
+    }
+    if (pending.size() < 2) {
+      // a single diagram is generated as fast during the render
+      return;
+    }
+    Supplier<Asciidoctor> factory = () -> timedCreateInstance(activeExtensions);
+    List<Future<?>> futures = new ArrayList<>();
+    try {
+      Map<String, Object> diagramOptions = withHeaderAttributes(md, factory, text, options);
+      int workers = Math.min(Math.min(DIAGRAM_THREADS, POOL.getMaxSize()), pending.size());
+      List<List<Map.Entry<String, String>>> shares = new ArrayList<>();
+      for (int i = 0; i < workers; ++i) {
+        shares.add(new ArrayList<>());
+      }
+      int next = 0;
+      for (Map.Entry<String, String> entry : pending.entrySet()) {
+        shares.get(next++ % workers).add(entry);
+      }
+      for (List<Map.Entry<String, String>> share : shares) {
+        futures.add(DIAGRAM_EXECUTOR.submit(() -> {
+          Asciidoctor asciidoctor = POOL.checkout(md, factory);
+          try {
+            share.forEach(entry -> renderDiagram(asciidoctor, entry.getKey(), entry.getValue(), diagramOptions));
+          } finally {
+            POOL.checkin(md, asciidoctor);
           }
-          t = t.getCause();
-        } while (t != null);
-        response.append("<p>(the full exception stack trace is available in the IDE's log file. Visit menu item 'Help | Show Log in Explorer' to see the log)");
-        return response.toString();
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } catch (InterruptedException e) {
+      futures.forEach(future -> future.cancel(false));
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException | RuntimeException e) {
+      log.warn("unable to generate diagram", e);
+    } finally {
+      RenderTimings.getInstance().recordSince(name, RenderTimings.Stage.DIAGRAMS, start);
+    }
+  }
+
+  /**
+   * Add the attributes the header of a document sets to the options, for example <code>imagesdir</code> or the
+   * options of diagrams, including those set in included files. They are added as soft attributes, so that
+   * the diagram can still change them. Attributes Asciidoctor sets for any document are left out.
+   */
+  @SuppressWarnings("unchecked")
+  private static Map<String, Object> withHeaderAttributes(String md, Supplier<Asciidoctor> factory, String text,
+                                                          Map<String, Object> options) {
+    Map<String, Object> headerOptions = new HashMap<>(options);
+    headerOptions.put(Options.PARSE_HEADER_ONLY, true);
+    Map<String, Object> defaults;
+    Map<String, Object> header;
+    Asciidoctor asciidoctor = POOL.checkout(md, factory);
+    try {
+      defaults = asciidoctor.load("", headerOptions).getAttributes();
+      header = DocumentIncludeProcessor.withMemo(text, () -> asciidoctor.load(text, headerOptions)).getAttributes();
+    } finally {
+      POOL.checkin(md, asciidoctor);
+    }
+    Map<String, Object> result = new HashMap<>(options);
+    Map<String, Object> attributes = new HashMap<>((Map<String, Object>) options.get(Options.ATTRIBUTES));
+    header.forEach((key, value) -> {
+      if (value != null && !key.equals("doctitle") && !Objects.equals(defaults.get(key), value)) {
+        attributes.putIfAbsent(key, value + "@");
+      }
+    });
+    result.put(Options.ATTRIBUTES, attributes);
+    return result;
+  }
+
+  private void renderDiagram(Asciidoctor asciidoctor, String key, String diagram, Map<String, Object> options) {
+    ClassLoader old = Thread.currentThread().getContextClassLoader();
+    ByteArrayOutputStream boas = new ByteArrayOutputStream();
+    SystemOutputHijacker.register(new PrintStream(boas), new PrintStream(boas));
+    try {
+      Thread.currentThread().setContextClassLoader(AsciiDocAction.class.getClassLoader());
+      asciidoctor.convert(diagram, options);
+      RENDERED_DIAGRAMS.add(key);
+    } catch (RuntimeException | ServiceConfigurationError e) {
+      log.debug("unable to generate diagram", e);
+    } finally {
+      SystemOutputHijacker.deregister();
+      Thread.currentThread().setContextClassLoader(old);
+    }
+  }
+
+  /**
+   * Convert a document to a standalone HTML page with the same options as the preview, but without the
+   * source lines and PNG-only PlantUML diagrams the preview needs.
+   * Diagrams are written to the given folder. The result is not cached, and errors are thrown to the caller.
+   */
+  public String export(String text, Map<String, Object> attributes, List<String> extensions, Path outdir,
+                       Notifier notifier) {
+    List<String> activeExtensions = activeExtensions(extensions);
+    String md = calcMd(projectBasePath, activeExtensions);
+    Map<String, Object> options = getExportOptions(attributes, outdir);
+    Asciidoctor asciidoctor = POOL.checkout(md, () -> timedCreateInstance(activeExtensions));
+    CollectingLogHandler logHandler = new CollectingLogHandler();
+    ClassLoader old = Thread.currentThread().getContextClassLoader();
+    ByteArrayOutputStream boasOut = new ByteArrayOutputStream();
+    ByteArrayOutputStream boasErr = new ByteArrayOutputStream();
+    SystemOutputHijacker.register(new PrintStream(boasOut), new PrintStream(boasErr));
+    asciidoctor.registerLogHandler(logHandler);
+    try {
+      Thread.currentThread().setContextClassLoader(AsciiDocAction.class.getClassLoader());
+      return DocumentIncludeProcessor.withMemo(text, () -> asciidoctor.convert(text, options));
+    } finally {
+      asciidoctor.unregisterLogHandler(logHandler);
+      SystemOutputHijacker.deregister();
+      Thread.currentThread().setContextClassLoader(old);
+      POOL.checkin(md, asciidoctor);
+      notifier.notify(boasOut, boasErr, logHandler.getLogRecords());
+    }
+  }
+
+  /**
+   * Number of Asciidoctor instances that can render in parallel.
+   */
+  public static int getPoolSize() {
+    return POOL.getMaxSize();
+  }
+
+  /**
+   * Render in a separate process, see {@link RenderWorkerPool}. These renders can't be cancelled,
+   * their result will be discarded by the caller.
+   */
+  private static String renderInWorker(RenderWorkerProtocol.Request request, String cacheKey, String outdir,
+                                       Notifier notifier) throws IOException {
+    RenderWorkerProtocol.Response response = WORKERS.render(request);
+    ByteArrayOutputStream boasOut = new ByteArrayOutputStream();
+    ByteArrayOutputStream boasErr = new ByteArrayOutputStream();
+    boasOut.write(response.getOut().getBytes(StandardCharsets.UTF_8));
+    boasErr.write(response.getErr().getBytes(StandardCharsets.UTF_8));
+    notifier.notify(boasOut, boasErr, response.getLogRecords());
+    if (response.getError() != null) {
+      throw new IOException("rendering in worker failed: " + response.getError());
+    }
+    String html = request.getKind() == RenderWorkerProtocol.CONVERT ? "<div id=\"content\">\n" + response.getHtml() + "\n</div>" : "";
+    CACHE.put(cacheKey, new RenderCache.Entry(html, response.getLogRecords(), response.getOut(), response.getErr(),
+      outdir));
+    return html;
+  }
+
+  private static boolean isRenderInWorker() {
+    return AsciiDocApplicationSettings.getInstance().getAsciiDocPreviewSettings().isRenderInWorker();
+  }
+
+  /**
+   * Run a conversion, allowing {@link #cancelRender()} to abort the conversion from another thread.
+   *
+   * @throws ProcessCanceledException if the conversion has been cancelled, any partial result is discarded
+   */
+  private <T> T runCancellable(Asciidoctor asciidoctor, Supplier<T> conversion) {
+    RubyThread thread = null;
+    if (asciidoctor instanceof JRubyAsciidoctor) {
+      thread = ((JRubyAsciidoctor) asciidoctor).getRubyRuntime().getCurrentContext().getThread();
+    }
+    synchronized (conversionLock) {
+      conversionThread = thread;
+      cancelled = false;
+      unusable = false;
+    }
+    boolean finished = false;
+    try {
+      T result = conversion.get();
+      finished = true;
+      if (!finishConversion(thread)) {
+        return result;
+      }
+    } catch (RuntimeException e) {
+      finished = true;
+      if (!finishConversion(thread)) {
+        throw e;
+      }
+    } finally {
+      if (!finished) {
+        finishConversion(thread);
+      }
+    }
+    throw new ProcessCanceledException();
+  }
+
+  /**
+   * Stop accepting cancellations for the current conversion. Checking for a cancellation and clearing the thread
+   * happen at once, therefore no interrupt can be raised after this.
+   *
+   * @return <code>true</code> if the conversion has been cancelled
+   */
+  private boolean finishConversion(@Nullable RubyThread thread) {
+    boolean wasCancelled;
+    synchronized (conversionLock) {
+      wasCancelled = cancelled;
+      conversionThread = null;
+    }
+    if (wasCancelled && thread != null && !drain(thread)) {
+      synchronized (conversionLock) {
+        unusable = true;
+      }
+    }
+    return wasCancelled;
+  }
+
+  /**
+   * The interrupt might have been raised after the last time the thread checked for it, remove it
+   * before the instance is returned to the pool.
+   *
+   * @return <code>false</code> if there are still events pending afterwards
+   */
+  private boolean drain(RubyThread thread) {
+    for (int i = 0; i < 2; ++i) {
+      try {
+        thread.pollThreadEvents();
+        return true;
+      } catch (RuntimeException e) {
+        log.debug("discarded pending interrupt", e);
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Return an instance used by {@link #runCancellable(Asciidoctor, Supplier)} to the pool, or shut it down
+   * if a cancelled conversion left it in an unusable state.
+   */
+  private void checkin(String md, Asciidoctor asciidoctor) {
+    boolean discard;
+    synchronized (conversionLock) {
+      discard = unusable;
+      unusable = false;
+    }
+    if (discard) {
+      log.warn("discarding Asciidoctor instance with a pending interrupt");
+      POOL.discard(asciidoctor);
+    } else {
+      POOL.checkin(md, asciidoctor);
+    }
+  }
+
+  /**
+   * Abort the conversion currently running for this instance, for example as the document has been modified
+   * since the conversion started. The conversion stops when JRuby next checks for interrupts, and the
+   * render will throw a {@link ProcessCanceledException}.
+   */
+  public void cancelRender() {
+    synchronized (conversionLock) {
+      if (conversionThread != null && !cancelled) {
+        cancelled = true;
+        Ruby runtime = conversionThread.getRuntime();
+        conversionThread.raise(new IRubyObject[]{runtime.newRaiseException(runtime.getInterrupt(), "render cancelled")
+          .getException()}, Block.NULL_BLOCK);
       }
     }
   }
 
-  private Map<String, Object> getDefaultOptions() {
+  public static RenderCache getRenderCache() {
+    return CACHE;
+  }
+
+  @Nullable
+  @SuppressWarnings("unchecked")
+  private static String outdir(Map<String, Object> options) {
+    Object attributes = options.get(Options.ATTRIBUTES);
+    if (attributes instanceof Map) {
+      Object outdir = ((Map<String, Object>) attributes).get("outdir");
+      if (outdir != null) {
+        return outdir.toString();
+      }
+    }
+    return null;
+  }
+
+  private Map<String, Object> getDefaultOptions(Map<String, Object> configAttributes) {
     AttributesBuilder builder = AttributesBuilder.attributes()
       .showTitle(true)
       .sourceHighlighter("coderay")
@@ -372,6 +908,7 @@ public class AsciiDoc {
       }
     }
 
+    configAttributes.forEach(attrs::setAttribute);
     settings.getAsciiDocPreviewSettings().getAttributes().forEach(attrs::setAttribute);
 
     OptionsBuilder opts = OptionsBuilder.options().safe(SafeMode.UNSAFE).backend("html5").headerFooter(false)
@@ -381,4 +918,30 @@ public class AsciiDoc {
 
     return opts.asMap();
   }
+
+  /**
+   * Options to export a document, see {@link #export(String, Map, List, Path, Notifier)}.
+   */
+  @SuppressWarnings("unchecked")
+  private Map<String, Object> getExportOptions(Map<String, Object> configAttributes, Path outdir) {
+    Map<String, Object> options = getDefaultOptions(configAttributes);
+    options.put(Options.HEADER_FOOTER, true);
+    Map<String, Object> attributes = (Map<String, Object>) options.get(Options.ATTRIBUTES);
+    attributes.put("outdir", outdir.toAbsolutePath().normalize().toString());
+    attributes.put(EXPORT, "");
+    return options;
+  }
+
+  /**
+   * Options to load a document for validation, see {@link #validate(String, Map, List, Notifier)}.
+   * Images are not needed, therefore no output folder is set.
+   */
+  @SuppressWarnings("unchecked")
+  private Map<String, Object> getValidationOptions(Map<String, Object> configAttributes) {
+    Map<String, Object> options = getDefaultOptions(configAttributes);
+    Map<String, Object> attributes = (Map<String, Object>) options.get(Options.ATTRIBUTES);
+    attributes.remove("outdir");
+    attributes.put(VALIDATE_ONLY, "");
+    return options;
+  }
 }
@@ -0,0 +1,223 @@
+package org.asciidoc.intellij;
+
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.EditorFactory;
+import com.intellij.openapi.editor.event.DocumentAdapter;
+import com.intellij.openapi.editor.event.DocumentEvent;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.events.VFileEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileMoveEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFilePropertyChangeEvent;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Resolves the <code>.asciidoctorconfig</code> files that apply to a folder, from the project's base
+ * folder down to the folder itself. The result is kept per folder and is invalidated when a configuration
+ * file changes on disk or in an editor, so that rendering a document needs only a lookup.
+ */
+public class AsciiDocConfigService {
+
+  public static final String CONFIG_FILE_NAME = ".asciidoctorconfig";
+
+  private final Project project;
+
+  /**
+   * Resolved configuration by path of the folder.
+   */
+  private final Map<String, Config> configs = new HashMap<>();
+
+  public AsciiDocConfigService(Project project) {
+    this.project = project;
+    project.getMessageBus().connect(project).subscribe(VirtualFileManager.VFS_CHANGES, new BulkFileListener() {
+      @Override
+      public void before(@NotNull List<? extends VFileEvent> events) {
+      }
+
+      @Override
+      public void after(@NotNull List<? extends VFileEvent> events) {
+        for (VFileEvent event : events) {
+          if (isConfigFile(event.getPath())) {
+            invalidate(parentPath(event.getPath()));
+          } else if (event instanceof VFilePropertyChangeEvent
+            && VirtualFile.PROP_NAME.equals(((VFilePropertyChangeEvent) event).getPropertyName())
+            && CONFIG_FILE_NAME.equals(((VFilePropertyChangeEvent) event).getNewValue())) {
+            // a file has been renamed to become a configuration file
+            invalidate(parentPath(event.getPath()));
+          } else if (event instanceof VFileMoveEvent && CONFIG_FILE_NAME.equals(event.getFile().getName())) {
+            // for moved configuration files the path is the old location
+            invalidate(((VFileMoveEvent) event).getNewParent().getPath());
+          }
+        }
+      }
+    });
+    EditorFactory.getInstance().getEventMulticaster().addDocumentListener(new DocumentAdapter() {
+      @Override
+      public void documentChanged(DocumentEvent e) {
+        VirtualFile file = FileDocumentManager.getInstance().getFile(e.getDocument());
+        if (file != null && CONFIG_FILE_NAME.equals(file.getName()) && file.getParent() != null) {
+          invalidate(file.getParent().getPath());
+        }
+      }
+    }, project);
+  }
+
+  public static AsciiDocConfigService getInstance(@NotNull Project project) {
+    return ServiceManager.getService(project, AsciiDocConfigService.class);
+  }
+
+  /**
+   * Get the configuration to prepend to a file. A configuration file doesn't apply to itself.
+   */
+  @NotNull
+  public Config getConfig(@NotNull VirtualFile file) {
+    VirtualFile folder = file.getParent();
+    if (folder == null) {
+      return Config.EMPTY;
+    }
+    if (CONFIG_FILE_NAME.equals(file.getName())) {
+      if (folder.getPath().equals(project.getBasePath()) || folder.getParent() == null) {
+        return Config.EMPTY;
+      }
+      folder = folder.getParent();
+    }
+    return resolve(folder);
+  }
+
+  private synchronized Config resolve(@NotNull VirtualFile folder) {
+    Config config = configs.get(folder.getPath());
+    if (config == null) {
+      Config parent = Config.EMPTY;
+      if (!folder.getPath().equals(project.getBasePath()) && folder.getParent() != null) {
+        parent = resolve(folder.getParent());
+      }
+      config = parent;
+      VirtualFile configFile = folder.findChild(CONFIG_FILE_NAME);
+      if (configFile != null) {
+        Document document = FileDocumentManager.getInstance().getDocument(configFile);
+        if (document != null) {
+          // append the config, followed by two newlines to avoid sticking-together content
+          config = new Config(parent.getText() + document.getText() + "\n\n",
+            Config.merge(parent.getAttributes(), Config.parseAttributes(document.getText())));
+        }
+      }
+      configs.put(folder.getPath(), config);
+    }
+    return config;
+  }
+
+  /**
+   * Drop the resolved configuration of the folder and all its sub folders.
+   */
+  private synchronized void invalidate(@NotNull String folderPath) {
+    configs.keySet().removeIf(path -> path.equals(folderPath) || path.startsWith(folderPath + "/"));
+  }
+
+  private static boolean isConfigFile(String path) {
+    return path.endsWith("/" + CONFIG_FILE_NAME);
+  }
+
+  private static String parentPath(String path) {
+    int index = path.lastIndexOf('/');
+    return index > 0 ? path.substring(0, index) : path;
+  }
+
+  /**
+   * Concatenated contents of all configuration files that apply to a folder, and the attributes they define.
+   */
+  public static final class Config {
+    public static final Config EMPTY = new Config("", Collections.emptyMap());
+
+    private static final Pattern ATTRIBUTE_ENTRY = Pattern.compile("^:(!?)(\\w[\\w-]*)(!?):(?:[ \\t]+(.*))?$");
+
+    private final String text;
+    private final int lineCount;
+    private final Map<String, Object> attributes;
+
+    private Config(String text, @Nullable Map<String, Object> attributes) {
+      this.text = text;
+      this.lineCount = (int) text.chars().filter(c -> c == '\n').count();
+      this.attributes = attributes != null ? Collections.unmodifiableMap(attributes) : null;
+    }
+
+    public String getText() {
+      return text;
+    }
+
+    /**
+     * Number of lines the configuration adds in front of the document.
+     */
+    public int getLineCount() {
+      return lineCount;
+    }
+
+    /**
+     * Attributes to be passed to Asciidoctor instead of prepending the text.
+     *
+     * @return the attributes, or <code>null</code> if a configuration file contains more than attribute entries
+     */
+    @Nullable
+    public Map<String, Object> getAttributes() {
+      return attributes;
+    }
+
+    /**
+     * Parse a configuration file that contains only attribute entries, comments and blank lines.
+     * Attributes are soft-set (the document can still override them) like they would be when the text is
+     * prepended to the document.
+     *
+     * @return the attributes, or <code>null</code> if the text contains other content, line continuations or
+     * references to other attributes
+     */
+    @Nullable
+    public static Map<String, Object> parseAttributes(String text) {
+      Map<String, Object> result = new LinkedHashMap<>();
+      boolean inComment = false;
+      for (String line : text.split("\\r\\n|\\r|\\n")) {
+        String trimmed = line.trim();
+        if (trimmed.startsWith("////")) {
+          inComment = !inComment;
+          continue;
+        }
+        if (inComment || trimmed.isEmpty() || trimmed.startsWith("//")) {
+          continue;
+        }
+        Matcher matcher = ATTRIBUTE_ENTRY.matcher(line);
+        if (!matcher.matches() || line.endsWith("\\") || line.contains("{")) {
+          return null;
+        }
+        if (!matcher.group(1).isEmpty() || !matcher.group(3).isEmpty()) {
+          // false unsets the attribute, but allows the document to set it again
+          result.put(matcher.group(2), Boolean.FALSE);
+        } else {
+          String value = matcher.group(4) != null ? matcher.group(4).trim() : "";
+          result.put(matcher.group(2), value + "@");
+        }
+      }
+      return result;
+    }
+
+    @Nullable
+    private static Map<String, Object> merge(@Nullable Map<String, Object> parent, @Nullable Map<String, Object> child) {
+      if (parent == null || child == null) {
+        return null;
+      }
+      Map<String, Object> result = new LinkedHashMap<>(parent);
+      result.putAll(child);
+      return result;
+    }
+  }
+}
@@ -0,0 +1,155 @@
+package org.asciidoc.intellij;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import org.apache.commons.io.FileUtils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the images generated by asciidoctor-diagram for the documents of a project in the IDE's system folder,
+ * so that they survive closing the preview and restarting the IDE. Each document gets its own folder to use as
+ * <code>outdir</code>. Within that folder asciidoctor-diagram stores a checksum of the diagram type, source and
+ * attributes next to each image, and generates an image again only when this checksum changes.
+ * The folders are evicted least recently used first when their total size exceeds a limit.
+ */
+public class AsciiDocDiagramCache {
+
+  private static final Logger LOG = Logger.getInstance(AsciiDocDiagramCache.class);
+
+  private final Path root;
+
+  private final long maxSize;
+
+  /**
+   * Number of previews using a folder, these folders are not evicted.
+   */
+  private final Map<Path, Integer> inUse = new HashMap<>();
+
+  public AsciiDocDiagramCache(Project project) {
+    this(new File(PathManager.getSystemPath(), "asciidoctor-diagrams/" + project.getLocationHash()).toPath(),
+      defaultSize());
+  }
+
+  AsciiDocDiagramCache(Path root, long maxSize) {
+    this.root = root;
+    this.maxSize = maxSize;
+  }
+
+  public static AsciiDocDiagramCache getInstance(@NotNull Project project) {
+    return ServiceManager.getService(project, AsciiDocDiagramCache.class);
+  }
+
+  /**
+   * Default size in bytes, can be overridden with the system property <code>asciidoc.diagram.cache.mb</code>.
+   */
+  public static long defaultSize() {
+    return Long.getLong("asciidoc.diagram.cache.mb", 256) * 1024 * 1024;
+  }
+
+  /**
+   * Get the folder for the images of a file and mark it as used until {@link #release(Path)} is called.
+   *
+   * @return the folder, or <code>null</code> if it can't be created
+   */
+  @Nullable
+  public Path acquire(@NotNull VirtualFile file) {
+    Path folder = root.resolve(hash(file.getPath()));
+    try {
+      Files.createDirectories(folder);
+    } catch (IOException e) {
+      LOG.warn("unable to create folder for diagrams " + folder, e);
+      return null;
+    }
+    // the modification time of the folder tracks when it has been used last
+    if (!folder.toFile().setLastModified(System.currentTimeMillis())) {
+      LOG.debug("unable to update modification time of " + folder);
+    }
+    synchronized (this) {
+      inUse.merge(folder, 1, Integer::sum);
+    }
+    return folder;
+  }
+
+  /**
+   * Mark the folder as no longer used, and evict folders if the cache exceeds its size.
+   */
+  public void release(@NotNull Path folder) {
+    if (!folder.toFile().setLastModified(System.currentTimeMillis())) {
+      LOG.debug("unable to update modification time of " + folder);
+    }
+    synchronized (this) {
+      inUse.computeIfPresent(folder, (path, count) -> count > 1 ? count - 1 : null);
+    }
+    ApplicationManager.getApplication().executeOnPooledThread(this::evict);
+  }
+
+  /**
+   * Delete the least recently used folders until the size of the cache is within its limit.
+   * Folders currently in use are kept.
+   */
+  void evict() {
+    File[] folders = root.toFile().listFiles(File::isDirectory);
+    if (folders == null) {
+      return;
+    }
+    List<Folder> candidates = new ArrayList<>();
+    long size = 0;
+    for (File folder : folders) {
+      Folder candidate = new Folder(folder, folder.lastModified(), FileUtils.sizeOfDirectory(folder));
+      size += candidate.size;
+      candidates.add(candidate);
+    }
+    candidates.sort(Comparator.comparingLong(folder -> folder.lastUsed));
+    for (Folder candidate : candidates) {
+      if (size <= maxSize) {
+        break;
+      }
+      synchronized (this) {
+        if (inUse.containsKey(candidate.file.toPath())) {
+          continue;
+        }
+        try {
+          FileUtils.deleteDirectory(candidate.file);
+          size -= candidate.size;
+        } catch (IOException e) {
+          LOG.warn("unable to remove cached diagrams " + candidate.file, e);
+        }
+      }
+    }
+  }
+
+  private static String hash(String path) {
+    MessageDigest md = Md5.create();
+    md.update(path.getBytes(StandardCharsets.UTF_8));
+    return Md5.hex(md.digest());
+  }
+
+  private static final class Folder {
+    private final File file;
+    private final long lastUsed;
+    private final long size;
+
+    private Folder(File file, long lastUsed, long size) {
+      this.file = file;
+      this.lastUsed = lastUsed;
+      this.size = size;
+    }
+  }
+}
@@ -0,0 +1,201 @@
+package org.asciidoc.intellij;
+
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VfsUtilCore;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.events.VFileEvent;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps track of the Ruby extensions in the folder <code>.asciidoctor/lib</code> of a project, and the files
+ * they require. The list of extensions and their fingerprint are calculated once and then served from memory
+ * until a change of one of these files is reported by the VFS.
+ */
+public class AsciiDocExtensionService {
+
+  private static final Logger LOG = Logger.getInstance(AsciiDocExtensionService.class);
+
+  private static final String EXTENSIONS_DIR = ".asciidoctor";
+
+  private static final Pattern REQUIRE = Pattern.compile("^\\s*(require|require_relative)\\s*\\(?\\s*['\"]([^'\"]+)['\"]",
+    Pattern.MULTILINE);
+
+  private final Project project;
+
+  private final AtomicLong invalidations = new AtomicLong();
+
+  private volatile Snapshot snapshot;
+
+  public AsciiDocExtensionService(Project project) {
+    this.project = project;
+    project.getMessageBus().connect(project).subscribe(VirtualFileManager.VFS_CHANGES, new BulkFileListener() {
+      @Override
+      public void before(@NotNull List<? extends VFileEvent> events) {
+      }
+
+      @Override
+      public void after(@NotNull List<? extends VFileEvent> events) {
+        Snapshot current = snapshot;
+        if (current == null) {
+          return;
+        }
+        for (VFileEvent event : events) {
+          if (current.isAffectedBy(event.getPath())) {
+            invalidate();
+            return;
+          }
+        }
+      }
+    });
+  }
+
+  public static AsciiDocExtensionService getInstance(@NotNull Project project) {
+    return ServiceManager.getService(project, AsciiDocExtensionService.class);
+  }
+
+  /**
+   * Canonical paths of the extensions of this project.
+   */
+  @NotNull
+  public List<String> getExtensions() {
+    return snapshot().extensions;
+  }
+
+  /**
+   * Hash of the project and the modification stamps of all extensions and the files they require.
+   * Changes whenever one of these files changes.
+   */
+  @NotNull
+  public String getFingerprint() {
+    return snapshot().fingerprint;
+  }
+
+  public void invalidate() {
+    invalidations.incrementAndGet();
+    snapshot = null;
+  }
+
+  private Snapshot snapshot() {
+    Snapshot current = snapshot;
+    if (current == null) {
+      long generation = invalidations.get();
+      current = ReadAction.compute(this::scan);
+      // don't keep the result if a change has been reported while scanning
+      if (invalidations.get() == generation) {
+        snapshot = current;
+      }
+    }
+    return current;
+  }
+
+  private Snapshot scan() {
+    String basePath = project.getBasePath();
+    List<String> extensions = new ArrayList<>();
+    Map<String, Long> files = new LinkedHashMap<>();
+    VirtualFile lib = project.getBaseDir() != null ? project.getBaseDir().findChild(EXTENSIONS_DIR) : null;
+    if (lib != null) {
+      lib = lib.findChild("lib");
+    }
+    if (lib != null) {
+      for (VirtualFile vf : lib.getChildren()) {
+        if ("rb".equals(vf.getExtension())) {
+          if (FileDocumentManager.getInstance().getDocument(vf) != null) {
+            extensions.add(vf.getCanonicalPath());
+            collect(vf, lib, files);
+          }
+        }
+      }
+    }
+    return new Snapshot(basePath, extensions, files);
+  }
+
+  /**
+   * Record the file and follow the files it requires that can be found in the project.
+   */
+  private static void collect(VirtualFile file, VirtualFile lib, Map<String, Long> files) {
+    if (files.containsKey(file.getPath())) {
+      return;
+    }
+    files.put(file.getPath(), file.getModificationStamp());
+    String text;
+    try {
+      text = VfsUtilCore.loadText(file);
+    } catch (IOException e) {
+      LOG.warn("unable to read extension " + file.getPath(), e);
+      return;
+    }
+    Matcher matcher = REQUIRE.matcher(text);
+    while (matcher.find()) {
+      VirtualFile required = resolve(matcher.group(1), matcher.group(2), file, lib);
+      if (required != null && !required.isDirectory()) {
+        collect(required, lib, files);
+      }
+    }
+  }
+
+  /**
+   * Resolve files required relative to the current file, or relative to the extension folder.
+   * Libraries from gems will not be found and are not tracked.
+   */
+  @Nullable
+  private static VirtualFile resolve(String method, String name, VirtualFile file, VirtualFile lib) {
+    String fileName = name.endsWith(".rb") ? name : name + ".rb";
+    VirtualFile parent = file.getParent();
+    if (parent == null) {
+      return null;
+    }
+    if ("require_relative".equals(method) || name.startsWith(".")) {
+      return parent.findFileByRelativePath(fileName);
+    }
+    return lib.findFileByRelativePath(fileName);
+  }
+
+  private static final class Snapshot {
+    private final List<String> extensions;
+    private final Map<String, Long> files;
+    private final String extensionsDir;
+    private final String fingerprint;
+
+    private Snapshot(String basePath, List<String> extensions, Map<String, Long> files) {
+      this.extensions = Collections.unmodifiableList(extensions);
+      this.files = files;
+      this.extensionsDir = basePath + "/" + EXTENSIONS_DIR;
+      this.fingerprint = fingerprint(basePath, files);
+    }
+
+    private boolean isAffectedBy(String path) {
+      return path.equals(extensionsDir) || path.startsWith(extensionsDir + "/") || files.containsKey(path);
+    }
+
+    private static String fingerprint(String basePath, Map<String, Long> files) {
+      MessageDigest md = Md5.create();
+      md.update(String.valueOf(basePath).getBytes(StandardCharsets.UTF_8));
+      for (Map.Entry<String, Long> entry : files.entrySet()) {
+        md.update((byte) 0);
+        md.update(entry.getKey().getBytes(StandardCharsets.UTF_8));
+        md.update((byte) '=');
+        md.update(Long.toString(entry.getValue()).getBytes(StandardCharsets.UTF_8));
+      }
+      return Md5.hex(md.digest());
+    }
+  }
+}
@@ -0,0 +1,187 @@
+package org.asciidoc.intellij;
+
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.util.PsiModificationTracker;
+import com.intellij.util.indexing.FileBasedIndex;
+import org.asciidoc.intellij.file.AsciiDocFileType;
+import org.asciidoc.intellij.indexer.AsciiDocIncludeIndex;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Answers which files include a file, and which files a file depends on, based on the {@link AsciiDocIncludeIndex}.
+ * Results are kept until a PSI or VFS change happens, so that repeated queries of previews and caches are cheap.
+ * All methods need read access. While the index is updated, they return empty results.
+ */
+public class AsciiDocIncludeService {
+
+  private final Project project;
+
+  private final Map<VirtualFile, Set<VirtualFile>> includers = new ConcurrentHashMap<>();
+
+  private final Map<VirtualFile, Dependencies> dependencies = new ConcurrentHashMap<>();
+
+  /**
+   * Modification count the cached results are valid for.
+   */
+  private volatile long stamp = -1;
+
+  public AsciiDocIncludeService(Project project) {
+    this.project = project;
+  }
+
+  public static AsciiDocIncludeService getInstance(@NotNull Project project) {
+    return ServiceManager.getService(project, AsciiDocIncludeService.class);
+  }
+
+  /**
+   * All files that include the given file, directly or via other included files.
+   */
+  @NotNull
+  public Set<VirtualFile> getIncluders(@NotNull VirtualFile file) {
+    if (!isReady()) {
+      return Collections.emptySet();
+    }
+    return includers.computeIfAbsent(file, this::findIncluders);
+  }
+
+  /**
+   * All files included by the given file, directly or via other included files.
+   */
+  @NotNull
+  public Set<VirtualFile> getIncludes(@NotNull VirtualFile file) {
+    if (!isReady()) {
+      return Collections.emptySet();
+    }
+    return dependencies.computeIfAbsent(file, this::findDependencies).includes;
+  }
+
+  /**
+   * All files the given file depends on: the files it includes, directly or via other included files,
+   * and the files these refer to with a cross reference.
+   */
+  @NotNull
+  public Set<VirtualFile> getDependencies(@NotNull VirtualFile file) {
+    if (!isReady()) {
+      return Collections.emptySet();
+    }
+    return dependencies.computeIfAbsent(file, this::findDependencies).all;
+  }
+
+  /**
+   * Check that the index can be queried, and drop cached results if anything changed since they have been computed.
+   */
+  private boolean isReady() {
+    if (DumbService.isDumb(project)) {
+      return false;
+    }
+    // both counters only increase, therefore their sum changes whenever one of them changes
+    long current = PsiModificationTracker.SERVICE.getInstance(project).getModificationCount()
+      + VirtualFileManager.getInstance().getModificationCount();
+    if (current != stamp) {
+      includers.clear();
+      dependencies.clear();
+      stamp = current;
+    }
+    return true;
+  }
+
+  private Set<VirtualFile> findIncluders(VirtualFile file) {
+    Set<VirtualFile> result = new LinkedHashSet<>();
+    Deque<VirtualFile> queue = new ArrayDeque<>();
+    queue.add(file);
+    GlobalSearchScope scope = GlobalSearchScope.allScope(project);
+    while (!queue.isEmpty()) {
+      VirtualFile included = queue.poll();
+      FileBasedIndex.getInstance().processValues(AsciiDocIncludeIndex.NAME, included.getName(), null,
+        (includer, targets) -> {
+          for (AsciiDocIncludeIndex.Target target : targets) {
+            if (target.getKind() == AsciiDocIncludeIndex.Kind.INCLUDE && included.equals(resolve(includer, target))
+              && !includer.equals(file) && result.add(includer)) {
+              queue.add(includer);
+            }
+          }
+          return true;
+        }, scope);
+    }
+    return Collections.unmodifiableSet(result);
+  }
+
+  private Dependencies findDependencies(VirtualFile file) {
+    Set<VirtualFile> includes = new LinkedHashSet<>();
+    Set<VirtualFile> all = new LinkedHashSet<>();
+    Deque<VirtualFile> queue = new ArrayDeque<>();
+    queue.add(file);
+    GlobalSearchScope scope = GlobalSearchScope.allScope(project);
+    while (!queue.isEmpty()) {
+      VirtualFile includer = queue.poll();
+      FileBasedIndex.getInstance().processValues(AsciiDocIncludeIndex.NAME, AsciiDocIncludeIndex.ALL, includer,
+        (ignored, targets) -> {
+          for (AsciiDocIncludeIndex.Target target : targets) {
+            VirtualFile resolved = resolve(includer, target);
+            if (resolved == null || resolved.equals(file)) {
+              continue;
+            }
+            all.add(resolved);
+            if (target.getKind() == AsciiDocIncludeIndex.Kind.INCLUDE && includes.add(resolved)) {
+              queue.add(resolved);
+            }
+          }
+          return true;
+        }, scope);
+    }
+    return new Dependencies(Collections.unmodifiableSet(includes), Collections.unmodifiableSet(all));
+  }
+
+  /**
+   * Find the file of a target relative to the file it is declared in.
+   * Cross references may omit the extension of the file they refer to.
+   *
+   * @return the file, or <code>null</code> if the target contains unresolved attributes or doesn't exist
+   */
+  @Nullable
+  static VirtualFile resolve(@NotNull VirtualFile file, @NotNull AsciiDocIncludeIndex.Target target) {
+    String path = target.getPath();
+    VirtualFile parent = file.getParent();
+    if (path.isEmpty() || path.contains("{") || path.contains("://") || parent == null) {
+      return null;
+    }
+    VirtualFile result = find(parent, path);
+    if (result == null && target.getKind() == AsciiDocIncludeIndex.Kind.XREF
+      && !AsciiDocFileType.hasAsciiDocExtension(path)) {
+      result = find(parent, path + ".adoc");
+    }
+    return result != null && !result.isDirectory() ? result : null;
+  }
+
+  private static VirtualFile find(VirtualFile parent, String path) {
+    if (path.startsWith("/")) {
+      return LocalFileSystem.getInstance().findFileByPath(path);
+    }
+    return parent.findFileByRelativePath(path);
+  }
+
+  private static final class Dependencies {
+    private final Set<VirtualFile> includes;
+    private final Set<VirtualFile> all;
+
+    private Dependencies(Set<VirtualFile> includes, Set<VirtualFile> all) {
+      this.includes = includes;
+      this.all = all;
+    }
+  }
+}
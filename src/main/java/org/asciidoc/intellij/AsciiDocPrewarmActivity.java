@@ -0,0 +1,56 @@
+package org.asciidoc.intellij;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.startup.StartupActivity;
+import com.intellij.psi.search.FileTypeIndex;
+import com.intellij.psi.search.GlobalSearchScope;
+import org.asciidoc.intellij.file.AsciiDocFileType;
+import org.asciidoc.intellij.settings.AsciiDocApplicationSettings;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * Prepare the Asciidoctor runtime on a low priority background thread when a project with AsciiDoc files
+ * is opened, so that the first preview doesn't need to wait for JRuby and Asciidoctor to start.
+ * This is opt-in, as it uses memory and CPU even if no preview will be opened.
+ */
+public class AsciiDocPrewarmActivity implements StartupActivity {
+
+  private static final Logger LOG = Logger.getInstance(AsciiDocPrewarmActivity.class);
+
+  @Override
+  public void runActivity(@NotNull Project project) {
+    if (!AsciiDocApplicationSettings.getInstance().getAsciiDocPreviewSettings().isPrewarmRuntime()) {
+      return;
+    }
+    // the index to find AsciiDoc files is available only after indexing has finished
+    DumbService.getInstance(project).runWhenSmart(() -> ApplicationManager.getApplication().executeOnPooledThread(() -> {
+      Thread thread = Thread.currentThread();
+      int priority = thread.getPriority();
+      thread.setPriority(Thread.MIN_PRIORITY);
+      try {
+        List<String> extensions = ReadAction.compute(() -> {
+          if (project.isDisposed()
+            || !FileTypeIndex.containsFileOfType(AsciiDocFileType.INSTANCE, GlobalSearchScope.projectScope(project))) {
+            return null;
+          }
+          return AsciiDoc.getExtensions(project);
+        });
+        if (extensions != null) {
+          new AsciiDoc(project, new File(project.getBasePath()), null, project.getName())
+            .prewarm(extensions);
+        }
+      } catch (RuntimeException e) {
+        LOG.warn("unable to prepare Asciidoctor runtime", e);
+      } finally {
+        thread.setPriority(priority);
+      }
+    }));
+  }
+}
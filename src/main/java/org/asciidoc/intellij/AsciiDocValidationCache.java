@@ -0,0 +1,184 @@
+package org.asciidoc.intellij;
+
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the errors Asciidoctor reported for the AsciiDoc files of a project in the IDE's system folder, so that
+ * {@link ProjectValidator} needs to validate only files that changed since the last run, even after a restart.
+ * Each entry is stored with a key that hashes the content, the configuration and the includes of the file.
+ */
+public class AsciiDocValidationCache {
+
+  private static final Logger LOG = Logger.getInstance(AsciiDocValidationCache.class);
+
+  /**
+   * Increase when the format of the file changes, older files are then discarded.
+   */
+  private static final int VERSION = 1;
+
+  private final Path file;
+
+  /**
+   * Entries by path of the file, loaded on first access.
+   */
+  private Map<String, Entry> entries;
+
+  public AsciiDocValidationCache(Project project) {
+    this(new File(PathManager.getSystemPath(), "asciidoctor-validation/" + project.getLocationHash() + ".dat").toPath());
+  }
+
+  AsciiDocValidationCache(Path file) {
+    this.file = file;
+  }
+
+  public static AsciiDocValidationCache getInstance(@NotNull Project project) {
+    return ServiceManager.getService(project, AsciiDocValidationCache.class);
+  }
+
+  /**
+   * Get the errors of a file if they have been stored with the same key.
+   *
+   * @return the errors, or <code>null</code> if the file needs to be validated
+   */
+  @Nullable
+  public synchronized List<Message> get(@NotNull String path, @NotNull String key) {
+    Entry entry = entries().get(path);
+    if (entry == null || !entry.key.equals(key)) {
+      return null;
+    }
+    return entry.messages;
+  }
+
+  public synchronized void put(@NotNull String path, @NotNull String key, @NotNull List<Message> messages) {
+    entries().put(path, new Entry(key, Collections.unmodifiableList(new ArrayList<>(messages))));
+  }
+
+  /**
+   * Remove the entries of all files not in the given collection, for example of deleted files.
+   */
+  public synchronized void retain(@NotNull Collection<String> paths) {
+    entries().keySet().retainAll(paths);
+  }
+
+  public synchronized void clear() {
+    entries = new HashMap<>();
+    try {
+      Files.deleteIfExists(file);
+    } catch (IOException e) {
+      LOG.warn("unable to delete validation cache " + file, e);
+    }
+  }
+
+  /**
+   * Write the entries to disk. Errors are logged, as the cache can be rebuilt.
+   */
+  public synchronized void save() {
+    if (entries == null) {
+      return;
+    }
+    try {
+      Files.createDirectories(file.getParent());
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+        out.writeInt(VERSION);
+        out.writeInt(entries.size());
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+          out.writeUTF(entry.getKey());
+          out.writeUTF(entry.getValue().key);
+          out.writeInt(entry.getValue().messages.size());
+          for (Message message : entry.getValue().messages) {
+            out.writeInt(message.line);
+            out.writeUTF(message.text);
+          }
+        }
+      }
+    } catch (IOException e) {
+      LOG.warn("unable to write validation cache " + file, e);
+    }
+  }
+
+  private Map<String, Entry> entries() {
+    if (entries == null) {
+      entries = load();
+    }
+    return entries;
+  }
+
+  private Map<String, Entry> load() {
+    Map<String, Entry> result = new HashMap<>();
+    if (!Files.exists(file)) {
+      return result;
+    }
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+      if (in.readInt() != VERSION) {
+        return result;
+      }
+      int count = in.readInt();
+      for (int i = 0; i < count; ++i) {
+        String path = in.readUTF();
+        String key = in.readUTF();
+        int size = in.readInt();
+        List<Message> messages = new ArrayList<>(size);
+        for (int j = 0; j < size; ++j) {
+          messages.add(new Message(in.readInt(), in.readUTF()));
+        }
+        result.put(path, new Entry(key, Collections.unmodifiableList(messages)));
+      }
+    } catch (IOException e) {
+      LOG.warn("unable to read validation cache " + file + ", validating all files", e);
+      result.clear();
+    }
+    return result;
+  }
+
+  /**
+   * An error reported by Asciidoctor, with the line of the file (starting with 0) it is shown on.
+   */
+  public static final class Message {
+    private final int line;
+    private final String text;
+
+    public Message(int line, @NotNull String text) {
+      this.line = line;
+      this.text = text;
+    }
+
+    public int getLine() {
+      return line;
+    }
+
+    @NotNull
+    public String getText() {
+      return text;
+    }
+  }
+
+  private static final class Entry {
+    private final String key;
+    private final List<Message> messages;
+
+    private Entry(String key, List<Message> messages) {
+      this.key = key;
+      this.messages = messages;
+    }
+  }
+}
@@ -0,0 +1,210 @@
+package org.asciidoc.intellij;
+
+import org.asciidoctor.Asciidoctor;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Bounded pool of JRuby-backed {@link Asciidoctor} instances.
+ * Instances are keyed by the hash of the extensions that have been loaded into them. A render checks out an
+ * instance for its exclusive use and returns it once it is done, so that renders of independent editors and
+ * projects run in parallel instead of queuing behind a single global lock.
+ * As the key includes the project, each project keeps its own instances. When the pool is exhausted, the
+ * instance that has been idle the longest is replaced, and instances that haven't been used for a while are
+ * shut down to free their memory.
+ */
+public class AsciidoctorPool {
+
+  /**
+   * Estimated heap retained by a JRuby runtime with Asciidoctor and the diagram extensions loaded.
+   * Can be overridden with the system property <code>asciidoc.pool.instance.mb</code>.
+   */
+  private static final long HEAP_PER_INSTANCE = Long.getLong("asciidoc.pool.instance.mb", 128) * 1024 * 1024;
+
+  private final int maxSize;
+
+  private final Map<String, Deque<IdleInstance>> idle = new HashMap<>();
+
+  /**
+   * Number of instances created by this pool (either idle, checked out, or being created).
+   */
+  private int live;
+
+  public AsciidoctorPool(int maxSize) {
+    if (maxSize < 1) {
+      throw new IllegalArgumentException("pool needs to hold at least one instance");
+    }
+    this.maxSize = maxSize;
+  }
+
+  /**
+   * Default size is derived from the number of cores and the maximum heap, as each instance holds its own
+   * JRuby runtime. Half of the heap is left to the IDE. At least two instances are kept, so that two documents
+   * or projects render in parallel and switching between them doesn't start a new runtime each time.
+   * Can be overridden with the system property <code>asciidoc.pool.size</code>.
+   */
+  public static int defaultSize() {
+    return Integer.getInteger("asciidoc.pool.size",
+      size(Runtime.getRuntime().availableProcessors(), Runtime.getRuntime().maxMemory(), HEAP_PER_INSTANCE));
+  }
+
+  /**
+   * Number of instances for the given number of cores and maximum heap, see {@link #defaultSize()}.
+   */
+  static int size(int cores, long maxHeap, long heapPerInstance) {
+    int byHeap = (int) (maxHeap / 2 / heapPerInstance);
+    return Math.max(2, Math.min(cores, byHeap));
+  }
+
+  /**
+   * Instances idle for longer than this will be shut down, can be overridden with the system property
+   * <code>asciidoc.pool.idle.minutes</code>.
+   */
+  public static long defaultMaxIdleMillis() {
+    return Long.getLong("asciidoc.pool.idle.minutes", 10) * 60 * 1000;
+  }
+
+  public int getMaxSize() {
+    return maxSize;
+  }
+
+  /**
+   * Check out an instance for the given key. Will create a new instance using the factory when none is idle and the
+   * pool isn't exhausted, will replace an idle instance of a different key when the pool is exhausted, and will
+   * wait for an instance to be returned otherwise.
+   */
+  public Asciidoctor checkout(String key, Supplier<Asciidoctor> factory) {
+    Asciidoctor replaced = null;
+    synchronized (this) {
+      while (true) {
+        Deque<IdleInstance> instances = idle.get(key);
+        if (instances != null && !instances.isEmpty()) {
+          return instances.pop().asciidoctor;
+        }
+        if (live < maxSize) {
+          ++live;
+          break;
+        }
+        replaced = removeIdleInstance();
+        if (replaced != null) {
+          // the slot of the removed instance is taken over by the new instance
+          break;
+        }
+        try {
+          wait();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new IllegalStateException("interrupted while waiting for an Asciidoctor instance", e);
+        }
+      }
+    }
+    if (replaced != null) {
+      replaced.shutdown();
+    }
+    try {
+      Asciidoctor asciidoctor = factory.get();
+      if (asciidoctor == null) {
+        throw new IllegalStateException("factory didn't create an Asciidoctor instance");
+      }
+      return asciidoctor;
+    } catch (RuntimeException | Error e) {
+      release();
+      throw e;
+    }
+  }
+
+  /**
+   * Return an instance that has been checked out before for the same key.
+   */
+  public synchronized void checkin(String key, Asciidoctor asciidoctor) {
+    idle.computeIfAbsent(key, k -> new ArrayDeque<>()).push(new IdleInstance(asciidoctor, System.currentTimeMillis()));
+    notifyAll();
+  }
+
+  /**
+   * Shut down all instances that have been returned to the pool before the given time.
+   *
+   * @param timestamp time in milliseconds since the epoch
+   * @return number of instances that have been shut down
+   */
+  public int evictIdleSince(long timestamp) {
+    List<Asciidoctor> evicted = new ArrayList<>();
+    synchronized (this) {
+      Iterator<Deque<IdleInstance>> iterator = idle.values().iterator();
+      while (iterator.hasNext()) {
+        Deque<IdleInstance> instances = iterator.next();
+        // the least recently returned instances are at the end of the deque
+        while (!instances.isEmpty() && instances.peekLast().since < timestamp) {
+          evicted.add(instances.removeLast().asciidoctor);
+          --live;
+        }
+        if (instances.isEmpty()) {
+          iterator.remove();
+        }
+      }
+      if (!evicted.isEmpty()) {
+        notifyAll();
+      }
+    }
+    // shutting down an instance can take a while, don't block other threads
+    evicted.forEach(Asciidoctor::shutdown);
+    return evicted.size();
+  }
+
+  /**
+   * Shut down an instance that has been checked out before, for example when it has been left in an unusable state.
+   */
+  public void discard(Asciidoctor asciidoctor) {
+    try {
+      asciidoctor.shutdown();
+    } finally {
+      release();
+    }
+  }
+
+  private synchronized void release() {
+    --live;
+    notifyAll();
+  }
+
+  /**
+   * Remove the instance that has been idle the longest.
+   */
+  private Asciidoctor removeIdleInstance() {
+    Deque<IdleInstance> oldest = null;
+    String oldestKey = null;
+    for (Map.Entry<String, Deque<IdleInstance>> entry : idle.entrySet()) {
+      IdleInstance candidate = entry.getValue().peekLast();
+      if (candidate != null && (oldest == null || candidate.since < oldest.peekLast().since)) {
+        oldest = entry.getValue();
+        oldestKey = entry.getKey();
+      }
+    }
+    if (oldest == null) {
+      return null;
+    }
+    Asciidoctor asciidoctor = oldest.removeLast().asciidoctor;
+    if (oldest.isEmpty()) {
+      idle.remove(oldestKey);
+    }
+    return asciidoctor;
+  }
+
+  private static final class IdleInstance {
+    private final Asciidoctor asciidoctor;
+    private final long since;
+
+    private IdleInstance(Asciidoctor asciidoctor, long since) {
+      this.asciidoctor = asciidoctor;
+      this.since = since;
+    }
+  }
+
+}
@@ -0,0 +1,43 @@
+package org.asciidoc.intellij;
+
+import org.asciidoctor.Asciidoctor;
+
+import java.io.InputStream;
+import java.util.List;
+
+/**
+ * Registers the libraries and scripts the plugin needs with a new instance of Asciidoctor.
+ * This is shared by the instances running in the IDE and those in a
+ * {@link org.asciidoc.intellij.worker.RenderWorkerMain}, therefore it must not depend on IntelliJ classes.
+ */
+public final class AsciidoctorScripts {
+
+  private AsciidoctorScripts() {
+  }
+
+  /**
+   * Load diagram support, the plugin's scripts and the extensions of the project.
+   *
+   * @param extensions paths of the Ruby extensions to require
+   */
+  public static void register(Asciidoctor asciidoctor, List<String> extensions) {
+    asciidoctor.requireLibrary("asciidoctor-diagram");
+    asciidoctor.rubyExtensionRegistry().loadClass(script("sourceline-treeprocessor.rb"))
+      .treeprocessor("SourceLineTreeProcessor");
+    asciidoctor.rubyExtensionRegistry().loadClass(script("validation-treeprocessor.rb"))
+      .treeprocessor("ValidationTreeProcessor");
+    InputStream is = script("plantuml-png-patch.rb");
+    for (String extension : extensions) {
+      asciidoctor.rubyExtensionRegistry().requireLibrary(extension);
+    }
+    asciidoctor.rubyExtensionRegistry().loadClass(is);
+  }
+
+  private static InputStream script(String name) {
+    InputStream is = AsciidoctorScripts.class.getResourceAsStream("/" + name);
+    if (is == null) {
+      throw new RuntimeException("unable to load script " + name);
+    }
+    return is;
+  }
+}
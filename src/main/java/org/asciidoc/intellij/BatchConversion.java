@@ -0,0 +1,125 @@
+package org.asciidoc.intellij;
+
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.project.Project;
+import org.asciidoc.intellij.psi.AsciiDocBlockMacro;
+import org.asciidoc.intellij.settings.AsciiDocApplicationSettings;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Helpers shared by the conversions of all files of a folder or a project in the background, see
+ * {@link HtmlExporter} and {@link ProjectValidator}: a key of each file to skip files that haven't changed, and
+ * waiting for the conversions while the user can cancel them.
+ */
+final class BatchConversion {
+
+  private static final Pattern BLOCK_MACRO = Pattern.compile("^(\\w+)::([^\\[\\s][^\\[]*)\\[", Pattern.MULTILINE);
+
+  /**
+   * Includes nested deeper than this are not considered as dependencies.
+   */
+  private static final int MAX_DEPTH = 16;
+
+  private BatchConversion() {
+  }
+
+  /**
+   * Wait for a task of the executor, checking the indicator for cancellation while waiting.
+   */
+  static void waitFor(Future<?> future, ProgressIndicator indicator) throws IOException {
+    while (true) {
+      indicator.checkCanceled();
+      try {
+        future.get(100, TimeUnit.MILLISECONDS);
+        return;
+      } catch (TimeoutException e) {
+        // check for cancellation and wait again
+      } catch (CancellationException e) {
+        return;
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new ProcessCanceledException(e);
+      } catch (ExecutionException e) {
+        if (e.getCause() instanceof ProcessCanceledException) {
+          throw (ProcessCanceledException) e.getCause();
+        }
+        throw new IOException("conversion failed", e.getCause());
+      }
+    }
+  }
+
+  /**
+   * Part of the key that is the same for all files of a project: the extensions and the settings.
+   */
+  static String globalKey(Project project, List<String> extensions) {
+    return extensions + "\0" + AsciiDocExtensionService.getInstance(project).getFingerprint() + "\0"
+      + AsciiDocApplicationSettings.getInstance().getAsciiDocPreviewSettings().getAttributes();
+  }
+
+  /**
+   * Hash of the content with its configuration, the options and the dependencies of a file.
+   */
+  static String key(String text, Map<String, Object> attributes, String globalKey, Path baseDir) throws IOException {
+    MessageDigest md = Md5.create();
+    md.update((text + "\0" + attributes + "\0" + globalKey).getBytes(StandardCharsets.UTF_8));
+    addDependencies(md, text, baseDir, new HashSet<>(), 0);
+    return Md5.hex(md.digest());
+  }
+
+  /**
+   * Add the includes and the sources of diagrams found in the text to the hash, including the dependencies of
+   * included files. Includes are read from the same source as the conversion reads them.
+   * Targets with attribute references or URLs are not resolved.
+   */
+  static void addDependencies(MessageDigest md, String text, Path baseDir, Set<Path> visited, int depth)
+    throws IOException {
+    if (depth > MAX_DEPTH) {
+      return;
+    }
+    Matcher matcher = BLOCK_MACRO.matcher(text);
+    while (matcher.find()) {
+      String name = matcher.group(1);
+      String target = matcher.group(2).trim();
+      boolean include = name.equals("include");
+      if (!include && !AsciiDocBlockMacro.isDiagram(name) || target.contains("{") || target.contains("://")) {
+        continue;
+      }
+      Path dependency = baseDir.resolve(target).normalize();
+      if (!visited.add(dependency)) {
+        continue;
+      }
+      md.update(dependency.toString().getBytes(StandardCharsets.UTF_8));
+      if (include) {
+        String content = DocumentIncludeProcessor.load(dependency);
+        if (content == null) {
+          md.update((byte) 0);
+          continue;
+        }
+        md.update(content.getBytes(StandardCharsets.UTF_8));
+        addDependencies(md, content, dependency.getParent(), visited, depth + 1);
+      } else if (Files.isRegularFile(dependency)) {
+        // asciidoctor-diagram reads its sources from disk
+        md.update(Files.readAllBytes(dependency));
+      } else {
+        md.update((byte) 0);
+      }
+    }
+  }
+}
@@ -0,0 +1,55 @@
+package org.asciidoc.intellij;
+
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.util.PsiTreeUtil;
+import org.asciidoc.intellij.psi.AsciiDocAttributeDeclaration;
+import org.asciidoc.intellij.psi.AsciiDocBlockMacro;
+import org.asciidoc.intellij.psi.AsciiDocListing;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Extracts the diagrams of a document, so that they can be generated in parallel before the document is
+ * converted, see {@link AsciiDoc#renderDiagrams(String, java.util.function.Supplier, java.util.Map, List)}.
+ * Each diagram becomes a small document with the attribute entries that precede it, so that it produces the same image as in the full
+ * document. The conversion of the full document will then find the images up-to-date and won't generate
+ * them again.
+ */
+public final class DiagramPrepass {
+
+  private DiagramPrepass() {
+  }
+
+  /**
+   * Find the diagrams in a file. Needs to be called within a read action on a committed file.
+   *
+   * @param config configuration that is prepended to the content when rendering, see
+   *               {@link AsciiDoc#prependConfig(com.intellij.openapi.editor.Document, com.intellij.openapi.project.Project, java.util.function.IntConsumer)}
+   * @return one document per diagram
+   */
+  @NotNull
+  public static List<String> findDiagrams(@NotNull PsiFile file, @NotNull String config) {
+    List<String> diagrams = new ArrayList<>();
+    StringBuilder attributes = new StringBuilder(config);
+    for (PsiElement element : PsiTreeUtil.findChildrenOfAnyType(file, AsciiDocAttributeDeclaration.class,
+      AsciiDocListing.class, AsciiDocBlockMacro.class)) {
+      if (element instanceof AsciiDocAttributeDeclaration) {
+        attributes.append(element.getText()).append('\n');
+      } else if (isDiagram(element)) {
+        diagrams.add(attributes + "\n" + element.getText() + "\n");
+      }
+    }
+    return diagrams;
+  }
+
+  private static boolean isDiagram(PsiElement element) {
+    if (element instanceof AsciiDocListing) {
+      String language = ((AsciiDocListing) element).getFenceLanguage();
+      return language != null && language.startsWith("diagram-");
+    }
+    return element instanceof AsciiDocBlockMacro && ((AsciiDocBlockMacro) element).isDiagram();
+  }
+}
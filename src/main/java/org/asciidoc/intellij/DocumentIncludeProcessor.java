@@ -0,0 +1,278 @@
+package org.asciidoc.intellij;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VfsUtilCore;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import org.asciidoctor.ast.Cursor;
+import org.asciidoctor.extension.IncludeProcessor;
+import org.asciidoctor.extension.PreprocessorReader;
+import org.asciidoctor.log.LogRecord;
+import org.asciidoctor.log.Severity;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+
+/**
+ * Serves the content of included files from the IDE instead of letting Asciidoctor read them from disk.
+ * The content of a file is taken from its {@link Document} if it is open, so that unsaved changes show in the preview,
+ * otherwise from the VFS, and from disk only if the file isn't known to the VFS yet.
+ * Within a render wrapped in {@link #withMemo(String, Supplier)} each file is read once, even if it is included several
+ * times with different <code>lines</code> or <code>tags</code>.
+ * URLs are left to Asciidoctor.
+ */
+public class DocumentIncludeProcessor extends IncludeProcessor {
+
+  /**
+   * Lines of the files read during the current render of this thread, by absolute path.
+   */
+  private static final ThreadLocal<Map<String, List<String>>> MEMO = new ThreadLocal<>();
+
+  /**
+   * Text of the document rendered by this thread, to find the directives of unresolved includes in it.
+   */
+  private static final ThreadLocal<String> SOURCE = new ThreadLocal<>();
+
+  /**
+   * Run a render of a text, reading each included file at most once.
+   */
+  public static <T> T withMemo(String text, Supplier<T> render) {
+    String outerText = SOURCE.get();
+    SOURCE.set(text);
+    if (MEMO.get() != null) {
+      try {
+        return render.get();
+      } finally {
+        SOURCE.set(outerText);
+      }
+    }
+    MEMO.set(new HashMap<>());
+    try {
+      return render.get();
+    } finally {
+      MEMO.remove();
+      SOURCE.remove();
+    }
+  }
+
+  /**
+   * A stamp that changes whenever the content of a file included by the given file might have changed, either on
+   * disk or in an unsaved document. Changes of the file itself are left out, as its text is part of the cache key
+   * already. Use it as part of keys for caching rendered content.
+   *
+   * @param file the rendered file, or <code>null</code> if it isn't known; then all unsaved documents count
+   */
+  public static long modificationStamp(@Nullable Project project, @Nullable VirtualFile file) {
+    long stamp = VirtualFileManager.getInstance().getModificationCount();
+    Document[] unsaved = FileDocumentManager.getInstance().getUnsavedDocuments();
+    if (unsaved.length == 0) {
+      return stamp;
+    }
+    Set<VirtualFile> includes = null;
+    if (project != null && file != null && !DumbService.isDumb(project)) {
+      // while the index is updated the includes aren't known, then all unsaved documents count
+      includes = ReadAction.compute(() -> AsciiDocIncludeService.getInstance(project).getIncludes(file));
+    }
+    for (Document document : unsaved) {
+      VirtualFile unsavedFile = FileDocumentManager.getInstance().getFile(document);
+      if (unsavedFile == null || unsavedFile.equals(file) || includes != null && !includes.contains(unsavedFile)) {
+        continue;
+      }
+      // modification stamps of documents are unique, therefore this changes with every change of an included document
+      stamp = 31 * stamp + document.getModificationStamp();
+    }
+    return stamp;
+  }
+
+  @Override
+  public boolean handles(String target) {
+    return !target.contains("://");
+  }
+
+  @Override
+  public void process(org.asciidoctor.ast.Document document, PreprocessorReader reader, String target,
+                      Map<String, Object> attributes) {
+    // the directive has already been consumed from the reader
+    int directiveLine = reader.getLineNumber() - 1;
+    Path path = resolve(reader.getDir(), target);
+    List<String> lines = read(path);
+    if (lines == null) {
+      if (isOptional(attributes)) {
+        return;
+      }
+      log(new LogRecord(Severity.ERROR, new DirectiveCursor(reader, directiveLine), "include file not found: " + path));
+      String file = fileOf(reader);
+      reader.push_include("Unresolved directive in " + (file != null ? file : "<stdin>") + " - include::" + target
+        + "[" + attrlist(file, directiveLine, attributes) + "]", file, file, directiveLine, new HashMap<>());
+      return;
+    }
+    IncludeSelection selection = IncludeSelection.select(lines, attributes,
+      message -> log(new LogRecord(Severity.WARN, new DirectiveCursor(reader, directiveLine), message
+        + ": " + target)));
+    if (selection.getLines().isEmpty()) {
+      return;
+    }
+    reader.push_include(String.join("\n", selection.getLines()), path.toString(), target,
+      selection.getFirstLineNumber(), attributes);
+  }
+
+  /**
+   * The file the reader is reading from, or <code>null</code> for the document itself.
+   */
+  @Nullable
+  private static String fileOf(PreprocessorReader reader) {
+    String file = reader.getFile();
+    return file == null || file.isEmpty() ? null : file;
+  }
+
+  /**
+   * The attribute list of an include directive as written, so that an unresolved directive shows the same text as
+   * Asciidoctor would. If the directive can't be found, the list is rebuilt from the parsed attributes.
+   *
+   * @param file the file the directive is in, or <code>null</code> for the document itself
+   */
+  private static String attrlist(@Nullable String file, int lineNumber, Map<String, Object> attributes) {
+    List<String> lines = null;
+    if (file != null) {
+      lines = read(Paths.get(file));
+    } else if (SOURCE.get() != null) {
+      lines = Arrays.asList(StringUtil.convertLineSeparators(SOURCE.get()).split("\n", -1));
+    }
+    if (lines != null && lineNumber >= 1 && lineNumber <= lines.size()) {
+      String line = lines.get(lineNumber - 1);
+      if (line.startsWith("include::") && line.endsWith("]") && line.indexOf('[') >= 0) {
+        return line.substring(line.indexOf('[') + 1, line.length() - 1);
+      }
+    }
+    List<String> entries = new ArrayList<>();
+    new TreeMap<>(attributes).forEach((key, value) -> entries.add(key.matches("\\d+") ? String.valueOf(value)
+      : key + "=" + value));
+    return String.join(",", entries);
+  }
+
+  private static Path resolve(String dir, String target) {
+    File file = new File(target);
+    if (!file.isAbsolute()) {
+      file = new File(dir != null ? dir : ".", target);
+    }
+    return file.toPath().toAbsolutePath().normalize();
+  }
+
+  private static boolean isOptional(Map<String, Object> attributes) {
+    Object opts = attributes.get("opts");
+    return attributes.containsKey("optional-option")
+      || opts != null && Arrays.asList(opts.toString().split(",")).contains("optional");
+  }
+
+  /**
+   * Read the lines of a file, using the memo of the current render if there is one.
+   *
+   * @return the lines, or <code>null</code> if the file doesn't exist
+   */
+  @Nullable
+  private static List<String> read(Path path) {
+    Map<String, List<String>> memo = MEMO.get();
+    String key = path.toString();
+    if (memo != null && memo.containsKey(key)) {
+      return memo.get(key);
+    }
+    List<String> lines = null;
+    try {
+      String text = load(path);
+      if (text != null) {
+        lines = Arrays.asList(StringUtil.convertLineSeparators(text).split("\n", -1));
+        if (!lines.isEmpty() && lines.get(lines.size() - 1).isEmpty()) {
+          // a trailing newline doesn't start another line
+          lines = lines.subList(0, lines.size() - 1);
+        }
+      }
+    } catch (IOException e) {
+      lines = null;
+    }
+    if (memo != null) {
+      memo.put(key, lines);
+    }
+    return lines;
+  }
+
+  /**
+   * Read the content of a file the same way as an include does.
+   *
+   * @return the content, or <code>null</code> if the file doesn't exist
+   */
+  @Nullable
+  static String load(Path path) throws IOException {
+    if (ApplicationManager.getApplication() != null) {
+      VirtualFile file = LocalFileSystem.getInstance().findFileByPath(path.toString().replace(File.separatorChar, '/'));
+      if (file != null) {
+        if (file.isDirectory() || !file.isValid()) {
+          return null;
+        }
+        Document document = FileDocumentManager.getInstance().getCachedDocument(file);
+        if (document != null) {
+          return document.getImmutableCharSequence().toString();
+        }
+        return VfsUtilCore.loadText(file);
+      }
+    }
+    if (!Files.isRegularFile(path)) {
+      return null;
+    }
+    return new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Position of the include directive, so that messages are shown on its line.
+   */
+  private static final class DirectiveCursor implements Cursor {
+    private final int lineNumber;
+    private final String file;
+    private final String dir;
+
+    private DirectiveCursor(PreprocessorReader reader, int lineNumber) {
+      this.lineNumber = lineNumber;
+      this.file = fileOf(reader);
+      this.dir = reader.getDir();
+    }
+
+    @Override
+    public int getLineNumber() {
+      return lineNumber;
+    }
+
+    @Override
+    public String getPath() {
+      return file;
+    }
+
+    @Override
+    public String getDir() {
+      return dir;
+    }
+
+    @Override
+    public String getFile() {
+      return file;
+    }
+  }
+}
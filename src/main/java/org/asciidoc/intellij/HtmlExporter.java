@@ -0,0 +1,272 @@
+package org.asciidoc.intellij;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Computable;
+import com.intellij.openapi.vfs.VfsUtilCore;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileFilter;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.asciidoc.intellij.file.AsciiDocFileType;
+import org.asciidoctor.log.Severity;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Exports all AsciiDoc files of a folder to standalone HTML pages in a target folder, keeping the folder structure.
+ * The files are converted in parallel, one per Asciidoctor instance of the pool. A manifest in the target folder
+ * keeps a hash of the content and the dependencies of each file, a file is converted again only if this hash
+ * changes. Dependencies are included files and the sources of diagram block macros. Images of the source folder are
+ * copied to the target folder.
+ */
+public class HtmlExporter {
+
+  private static final Logger LOG = Logger.getInstance(HtmlExporter.class);
+
+  /**
+   * Location of the manifest in the target folder, next to the cache of asciidoctor-diagram.
+   */
+  static final String MANIFEST = ".asciidoctor/export.properties";
+
+  private static final Set<String> IMAGE_EXTENSIONS = new HashSet<>(Arrays.asList("png", "jpg", "jpeg", "gif", "svg",
+    "webp", "bmp", "ico"));
+
+  private final Project project;
+  private final VirtualFile source;
+  private final Path target;
+
+  public HtmlExporter(@NotNull Project project, @NotNull VirtualFile source, @NotNull Path target) {
+    this.project = project;
+    this.source = source;
+    this.target = target;
+  }
+
+  /**
+   * Export the files. Included files are taken from open documents like in the preview, see
+   * {@link DocumentIncludeProcessor}. All documents should have been saved before, as diagram sources are read
+   * from disk.
+   *
+   * @throws ProcessCanceledException if the indicator has been cancelled, files exported until then are kept
+   */
+  @NotNull
+  public Result export(@NotNull ProgressIndicator indicator) throws IOException {
+    indicator.setIndeterminate(true);
+    indicator.setText("Collecting AsciiDoc files");
+    List<VirtualFile> images = new ArrayList<>();
+    List<Input> inputs = ApplicationManager.getApplication().runReadAction((Computable<List<Input>>) () -> collect(images));
+    List<String> extensions = AsciiDoc.getExtensions(project);
+    String globalKey = BatchConversion.globalKey(project, extensions);
+    Properties manifest = loadManifest();
+    Properties updated = new Properties();
+    Result result = new Result();
+
+    indicator.setIndeterminate(false);
+    indicator.setText("Exporting AsciiDoc files to " + target);
+    AtomicInteger done = new AtomicInteger();
+    ExecutorService executor = AppExecutorUtil.createBoundedApplicationPoolExecutor("AsciiDoc export",
+      AsciiDoc.getPoolSize());
+    List<Future<?>> futures = new ArrayList<>();
+    try {
+      for (Input input : inputs) {
+        futures.add(executor.submit(() -> {
+          if (indicator.isCanceled()) {
+            return;
+          }
+          indicator.setText2(input.relativePath);
+          export(input, extensions, globalKey, manifest, updated, result);
+          indicator.setFraction((double) done.incrementAndGet() / inputs.size());
+        }));
+      }
+      for (Future<?> future : futures) {
+        BatchConversion.waitFor(future, indicator);
+      }
+    } finally {
+      futures.forEach(future -> future.cancel(false));
+      executor.shutdown();
+      saveManifest(updated);
+    }
+    indicator.setText2("");
+    copyImages(images);
+    return result;
+  }
+
+  private void export(Input input, List<String> extensions, String globalKey, Properties manifest,
+                      Properties updated, Result result) {
+    Path html = target.resolve(input.relativePath.replaceAll("\\.[^./]*$", "") + ".html");
+    try {
+      String key = BatchConversion.key(input.text, input.attributes, globalKey, input.baseDir.toPath());
+      if (key.equals(manifest.getProperty(input.relativePath)) && Files.exists(html)) {
+        updated.setProperty(input.relativePath, key);
+        result.skipped.incrementAndGet();
+        return;
+      }
+      Files.createDirectories(html.getParent());
+      AsciiDoc asciiDoc = new AsciiDoc(project, input.baseDir, null, input.name);
+      AtomicInteger errors = new AtomicInteger();
+      String content = asciiDoc.export(input.text, input.attributes, extensions, html.getParent(),
+        (boasOut, boasErr, logRecords) -> logRecords.stream()
+          .filter(logRecord -> logRecord.getSeverity().compareTo(Severity.ERROR) >= 0)
+          .forEach(logRecord -> errors.incrementAndGet()));
+      Files.write(html, content.getBytes(StandardCharsets.UTF_8));
+      if (errors.get() == 0) {
+        // a document with errors is exported again next time, as the errors might be fixed in a dependency
+        updated.setProperty(input.relativePath, key);
+      } else {
+        result.withErrors.add(input.relativePath);
+      }
+      result.exported.incrementAndGet();
+    } catch (ProcessCanceledException e) {
+      throw e;
+    } catch (Exception e) {
+      LOG.warn("unable to export " + input.relativePath, e);
+      result.failed.add(input.relativePath);
+    }
+  }
+
+  /**
+   * Find the AsciiDoc files and the images of the source folder, skipping hidden folders and the target folder.
+   */
+  private List<Input> collect(List<VirtualFile> images) {
+    List<Input> inputs = new ArrayList<>();
+    String targetPath = target.toAbsolutePath().normalize().toString().replace(File.separatorChar, '/');
+    VirtualFileFilter filter = file -> !(file.isDirectory()
+      && (file.getName().startsWith(".") || file.getPath().equals(targetPath)));
+    VfsUtilCore.iterateChildrenRecursively(source, filter, file -> {
+      if (file.isDirectory()) {
+        return true;
+      }
+      String relativePath = VfsUtilCore.getRelativePath(file, source, '/');
+      if (relativePath == null) {
+        return true;
+      }
+      if (file.getFileType() == AsciiDocFileType.INSTANCE) {
+        try {
+          Document document = FileDocumentManager.getInstance().getCachedDocument(file);
+          String text = document != null ? document.getText() : VfsUtilCore.loadText(file);
+          inputs.add(new Input(relativePath, file.getName(), new File(file.getParent().getPath()),
+            AsciiDoc.prependConfig(file, text, project, offset -> { }),
+            AsciiDoc.getConfigAttributes(file, project)));
+        } catch (IOException e) {
+          LOG.warn("unable to read " + file.getPath(), e);
+        }
+      } else if (file.getExtension() != null && IMAGE_EXTENSIONS.contains(file.getExtension().toLowerCase(Locale.ROOT))) {
+        images.add(file);
+      }
+      return true;
+    });
+    return inputs;
+  }
+
+  /**
+   * Copy images that are missing in the target folder or have changed.
+   */
+  private void copyImages(List<VirtualFile> images) {
+    for (VirtualFile image : images) {
+      String relativePath = VfsUtilCore.getRelativePath(image, source, '/');
+      if (relativePath == null) {
+        continue;
+      }
+      Path from = new File(image.getPath()).toPath();
+      Path to = target.resolve(relativePath);
+      try {
+        if (Files.exists(to) && Files.size(to) == Files.size(from)
+          && Files.getLastModifiedTime(to).equals(Files.getLastModifiedTime(from))) {
+          continue;
+        }
+        Files.createDirectories(to.getParent());
+        Files.copy(from, to, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+      } catch (IOException e) {
+        LOG.warn("unable to copy " + from + " to " + to, e);
+      }
+    }
+  }
+
+  private Properties loadManifest() {
+    Properties manifest = new Properties();
+    Path file = target.resolve(MANIFEST);
+    if (Files.exists(file)) {
+      try (InputStream is = Files.newInputStream(file)) {
+        manifest.load(is);
+      } catch (IOException e) {
+        LOG.warn("unable to read manifest " + file + ", exporting all files", e);
+        manifest.clear();
+      }
+    }
+    return manifest;
+  }
+
+  private void saveManifest(Properties manifest) throws IOException {
+    Path file = target.resolve(MANIFEST);
+    Files.createDirectories(file.getParent());
+    try (OutputStream os = Files.newOutputStream(file)) {
+      manifest.store(os, "files exported by the AsciiDoc plugin, don't edit");
+    }
+  }
+
+  /**
+   * Number of files exported, skipped as unchanged, exported with errors, and failed.
+   */
+  public static final class Result {
+    private final AtomicInteger exported = new AtomicInteger();
+    private final AtomicInteger skipped = new AtomicInteger();
+    private final List<String> withErrors = Collections.synchronizedList(new ArrayList<>());
+    private final List<String> failed = Collections.synchronizedList(new ArrayList<>());
+
+    public int getExported() {
+      return exported.get();
+    }
+
+    public int getSkipped() {
+      return skipped.get();
+    }
+
+    public List<String> getWithErrors() {
+      return withErrors;
+    }
+
+    public List<String> getFailed() {
+      return failed;
+    }
+  }
+
+  private static final class Input {
+    private final String relativePath;
+    private final String name;
+    private final File baseDir;
+    private final String text;
+    private final Map<String, Object> attributes;
+
+    private Input(String relativePath, String name, File baseDir, String text, Map<String, Object> attributes) {
+      this.relativePath = relativePath;
+      this.name = name;
+      this.baseDir = baseDir;
+      this.text = text;
+      this.attributes = attributes;
+    }
+  }
+}
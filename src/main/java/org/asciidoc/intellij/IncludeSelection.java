@@ -0,0 +1,216 @@
+package org.asciidoc.intellij;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Selects the lines of an included file according to the <code>lines</code>, <code>tag</code> and
+ * <code>tags</code> attributes of the include directive, following the rules of Asciidoctor's reader.
+ * This allows {@link DocumentIncludeProcessor} to serve the same content from a file read once.
+ */
+final class IncludeSelection {
+
+  private static final Pattern TAG_DIRECTIVE = Pattern.compile("\\b(?:tag|(e)nd)::(\\S+?)\\[\\](?=$|[ \\r])");
+
+  private static final Pattern SEPARATOR = Pattern.compile("[,;]");
+
+  private final List<String> lines;
+
+  private final int firstLineNumber;
+
+  private IncludeSelection(List<String> lines, int firstLineNumber) {
+    this.lines = lines;
+    this.firstLineNumber = firstLineNumber;
+  }
+
+  /**
+   * The selected lines.
+   */
+  List<String> getLines() {
+    return lines;
+  }
+
+  /**
+   * Line number of the first selected line in the included file, starting with 1.
+   */
+  int getFirstLineNumber() {
+    return firstLineNumber;
+  }
+
+  /**
+   * Select the lines of an included file.
+   *
+   * @param lines      all lines of the included file
+   * @param attributes attributes of the include directive
+   * @param warning    receives warnings about tags that are missing or not closed
+   */
+  static IncludeSelection select(List<String> lines, Map<String, Object> attributes, Consumer<String> warning) {
+    Object lineRanges = attributes.get("lines");
+    if (lineRanges != null) {
+      return selectLines(lines, lineRanges.toString());
+    }
+    Map<String, Boolean> tags = parseTags(attributes);
+    if (tags != null) {
+      return selectTags(lines, tags, warning);
+    }
+    return new IncludeSelection(lines, 1);
+  }
+
+  /**
+   * Select lines by ranges like <code>1..5;10..-1</code>, ranges without an end or ending with -1 select
+   * until the end of the file.
+   */
+  private static IncludeSelection selectLines(List<String> lines, String ranges) {
+    Set<Integer> selected = new TreeSet<>();
+    for (String range : SEPARATOR.split(ranges.replace(" ", ""))) {
+      if (range.isEmpty()) {
+        continue;
+      }
+      try {
+        int separator = range.indexOf("..");
+        if (separator == -1) {
+          selected.add(Integer.parseInt(range));
+        } else {
+          int from = Integer.parseInt(range.substring(0, separator));
+          String to = range.substring(separator + 2);
+          int until = to.isEmpty() || to.equals("-1") ? lines.size() : Integer.parseInt(to);
+          for (int i = from; i <= Math.min(until, lines.size()); ++i) {
+            selected.add(i);
+          }
+        }
+      } catch (NumberFormatException e) {
+        // Asciidoctor ignores ranges it can't parse
+      }
+    }
+    List<String> result = new ArrayList<>();
+    int first = 0;
+    for (int number : selected) {
+      if (number >= 1 && number <= lines.size()) {
+        if (first == 0) {
+          first = number;
+        }
+        result.add(lines.get(number - 1));
+      }
+    }
+    return new IncludeSelection(result, Math.max(first, 1));
+  }
+
+  /**
+   * Parse the tags to select, a value of <code>false</code> excludes a tag.
+   *
+   * @return the tags, or <code>null</code> if no tags are given
+   */
+  private static Map<String, Boolean> parseTags(Map<String, Object> attributes) {
+    Object tag = attributes.get("tag");
+    Object tags = attributes.get("tags");
+    String value;
+    if (tag != null) {
+      value = tag.toString();
+    } else if (tags != null) {
+      value = tags.toString();
+    } else {
+      return null;
+    }
+    Map<String, Boolean> result = new LinkedHashMap<>();
+    for (String name : tag != null ? new String[]{value} : SEPARATOR.split(value)) {
+      name = name.trim();
+      if (name.isEmpty() || name.equals("!")) {
+        continue;
+      }
+      if (name.startsWith("!")) {
+        result.put(name.substring(1), false);
+      } else {
+        result.put(name, true);
+      }
+    }
+    return result.isEmpty() ? null : result;
+  }
+
+  private static IncludeSelection selectTags(List<String> lines, Map<String, Boolean> tags, Consumer<String> warning) {
+    tags = new LinkedHashMap<>(tags);
+    boolean baseSelect;
+    Boolean wildcard;
+    if (tags.containsKey("**")) {
+      baseSelect = tags.remove("**");
+      wildcard = tags.containsKey("*") ? tags.remove("*") : baseSelect;
+    } else {
+      baseSelect = !tags.containsValue(true);
+      wildcard = tags.remove("*");
+    }
+    boolean select = baseSelect;
+
+    List<String> result = new ArrayList<>();
+    int first = 0;
+    Deque<ActiveTag> stack = new ArrayDeque<>();
+    String activeTag = null;
+    Set<String> included = new HashSet<>();
+    for (int i = 0; i < lines.size(); ++i) {
+      String line = lines.get(i);
+      Matcher matcher = line.contains("::") && line.contains("[]") ? TAG_DIRECTIVE.matcher(line) : null;
+      if (matcher != null && matcher.find()) {
+        String thisTag = matcher.group(2);
+        if (matcher.group(1) != null) {
+          if (thisTag.equals(activeTag)) {
+            stack.pop();
+            if (stack.isEmpty()) {
+              activeTag = null;
+              select = baseSelect;
+            } else {
+              activeTag = stack.peek().name;
+              select = stack.peek().select;
+            }
+          } else if (tags.containsKey(thisTag)) {
+            warning.accept("mismatched end tag (expected '" + activeTag + "' but found '" + thisTag
+              + "') at line " + (i + 1) + " of include file");
+          }
+        } else if (tags.containsKey(thisTag)) {
+          select = tags.get(thisTag);
+          if (select) {
+            included.add(thisTag);
+          }
+          activeTag = thisTag;
+          stack.push(new ActiveTag(thisTag, select));
+        } else if (wildcard != null) {
+          select = activeTag != null && !select ? false : wildcard;
+          activeTag = thisTag;
+          stack.push(new ActiveTag(thisTag, select));
+        }
+      } else if (select) {
+        if (first == 0) {
+          first = i + 1;
+        }
+        result.add(line);
+      }
+    }
+    for (ActiveTag unclosed : stack) {
+      warning.accept("detected unclosed tag '" + unclosed.name + "' in include file");
+    }
+    for (Map.Entry<String, Boolean> entry : tags.entrySet()) {
+      if (entry.getValue() && !included.contains(entry.getKey())) {
+        warning.accept("tag '" + entry.getKey() + "' not found in include file");
+      }
+    }
+    return new IncludeSelection(Collections.unmodifiableList(result), Math.max(first, 1));
+  }
+
+  private static final class ActiveTag {
+    private final String name;
+    private final boolean select;
+
+    private ActiveTag(String name, boolean select) {
+      this.name = name;
+      this.select = select;
+    }
+  }
+}
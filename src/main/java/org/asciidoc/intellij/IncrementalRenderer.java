@@ -0,0 +1,210 @@
+package org.asciidoc.intellij;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Renders a document as separate fragments, one for the preamble and one for each top-level section.
+ * Each section fragment is prefixed with the attribute entries that precede it in the document, so that
+ * attributes are carried forward. As each fragment is converted on its own, only changed fragments miss the
+ * {@link RenderCache} on the next render, while unchanged sections are served from the cache.
+ */
+public final class IncrementalRenderer {
+
+  private static final String CONTENT_START = "<div id=\"content\">\n";
+  private static final String CONTENT_END = "\n</div>";
+
+  /**
+   * Content that needs to see the full document to produce the correct output: attributes for a table of contents
+   * and section numbers, and numbers that continue across sections, like those of footnotes, counters and the
+   * captions of titled blocks. The attributes the document header sets from its title, author and revision lines
+   * are not known in the sections, so references to them need the full document as well.
+   */
+  private static final Pattern DOCUMENT_WIDE = Pattern.compile("^:!?(toc|sectnums|numbered)!?:|footnote(ref)?:"
+    + "|\\{counter2?:|^\\.[^.\\s]|\\{(doctitle|authors?|firstname|middlename|lastname|authorinitials|email"
+    + "|revnumber|revdate|revremark)(_\\d+)?}", Pattern.MULTILINE);
+
+  private static final Pattern DOCUMENT_WIDE_ATTRIBUTE = Pattern.compile("!?(toc|sectnums|numbered)!?");
+
+  private static final Pattern ATTRIBUTE_ENTRY = Pattern.compile("^:!?\\w[\\w-]*!?:.*$");
+
+  private static final Pattern DELIMITER = Pattern.compile("^(-{4,}|\\.{4,}|={4,}|\\*{4,}|_{4,}|\\+{4,}|/{4,}|```|\\|===)\\s*$");
+
+  private static final Pattern SECTION = Pattern.compile("^(={2,6}|#{2,6})\\s+(\\S.*)$");
+
+  private static final Pattern SOURCE_LINE = Pattern.compile("data-line-stdin-(\\d+)");
+
+  private static final Pattern SECTION_TITLE = Pattern.compile("<h[1-6] id=\"([^\"]+)\"[^>]*>(.*?)</h[1-6]>");
+
+  private static final Pattern UNRESOLVED_XREF = Pattern.compile("<a href=\"#([^\"]+)\">\\[\\1]</a>");
+
+  private IncrementalRenderer() {
+  }
+
+  /**
+   * Render the content fragment by fragment.
+   *
+   * @param content      content to be rendered, including any prepended configuration
+   * @param sectionLines zero-based line numbers in the content where the top-level sections start, ascending
+   * @param converter    converts a fragment to HTML, see {@link AsciiDoc#render(String, List)}
+   * @return the stitched HTML, or <code>null</code> if the content can't be rendered incrementally
+   */
+  @Nullable
+  public static String render(@NotNull String content, @NotNull List<Integer> sectionLines,
+                              @NotNull Function<String, String> converter) {
+    if (sectionLines.size() < 2 || DOCUMENT_WIDE.matcher(content).find()) {
+      return null;
+    }
+    String[] lines = content.split("\n", -1);
+    if (hasDuplicateSectionTitles(lines)) {
+      // Asciidoctor makes the generated ids unique within a document, but not across fragments
+      return null;
+    }
+    StringBuilder html = new StringBuilder();
+    StringBuilder header = new StringBuilder();
+    int headerLines = 0;
+    String delimiter = null;
+    int start = 0;
+    for (int i = 0; i <= sectionLines.size(); ++i) {
+      int end = i < sectionLines.size() ? sectionLines.get(i) : lines.length;
+      if (end > start) {
+        String fragment;
+        int shift;
+        if (i == 0) {
+          // preamble including the document header is rendered as it is
+          fragment = join(lines, start, end);
+          shift = 0;
+        } else {
+          // the header is followed by a blank line, therefore the section starts at line headerLines + 2
+          fragment = header + "\n" + join(lines, start, end);
+          shift = start - headerLines - 1;
+        }
+        String result = converter.apply(fragment);
+        if (!result.startsWith(CONTENT_START) || !result.endsWith(CONTENT_END)) {
+          // this is an error message, show it instead of the document
+          return result;
+        }
+        if (html.length() > 0) {
+          html.append('\n');
+        }
+        html.append(shiftSourceLines(result.substring(CONTENT_START.length(), result.length() - CONTENT_END.length()),
+          shift));
+      }
+      // collect attribute entries of this fragment to carry them forward to the following fragments
+      int line = start;
+      while (line < end) {
+        String text = lines[line];
+        if (delimiter == null && DELIMITER.matcher(text).matches()) {
+          delimiter = text.trim();
+        } else if (delimiter != null && delimiter.equals(text.trim())) {
+          delimiter = null;
+        } else if (delimiter == null && ATTRIBUTE_ENTRY.matcher(text).matches()) {
+          header.append(text).append('\n');
+          ++headerLines;
+          while (text.endsWith(" \\") && line + 1 < end) {
+            text = lines[++line];
+            header.append(text).append('\n');
+            ++headerLines;
+          }
+        }
+        ++line;
+      }
+      start = end;
+    }
+    return CONTENT_START + resolveReferences(html.toString()) + CONTENT_END;
+  }
+
+  /**
+   * Check if attributes passed to Asciidoctor allow rendering a document incrementally.
+   */
+  public static boolean supportsAttributes(@NotNull Map<String, ?> attributes) {
+    for (String name : attributes.keySet()) {
+      if (DOCUMENT_WIDE_ATTRIBUTE.matcher(name).matches()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Check if two section titles would get the same generated id. Titles that differ only in case or punctuation
+   * count as the same, as Asciidoctor drops these when generating an id.
+   */
+  private static boolean hasDuplicateSectionTitles(String[] lines) {
+    Set<String> titles = new HashSet<>();
+    String delimiter = null;
+    for (String line : lines) {
+      if (delimiter == null && DELIMITER.matcher(line).matches()) {
+        delimiter = line.trim();
+      } else if (delimiter != null && delimiter.equals(line.trim())) {
+        delimiter = null;
+      } else if (delimiter == null) {
+        Matcher section = SECTION.matcher(line);
+        if (section.matches() && !titles.add(section.group(2).toLowerCase(Locale.ROOT)
+          .replaceAll("[^\\p{L}\\p{N}]+", " ").trim())) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  private static String join(String[] lines, int start, int end) {
+    StringBuilder sb = new StringBuilder();
+    for (int i = start; i < end; ++i) {
+      if (i > start) {
+        sb.append('\n');
+      }
+      sb.append(lines[i]);
+    }
+    return sb.toString();
+  }
+
+  private static String shiftSourceLines(String html, int shift) {
+    if (shift == 0) {
+      return html;
+    }
+    Matcher matcher = SOURCE_LINE.matcher(html);
+    StringBuffer sb = new StringBuffer();
+    while (matcher.find()) {
+      matcher.appendReplacement(sb, "data-line-stdin-" + (Integer.parseInt(matcher.group(1)) + shift));
+    }
+    matcher.appendTail(sb);
+    return sb.toString();
+  }
+
+  /**
+   * Cross references to sections in other fragments can't be resolved when converting a single fragment,
+   * Asciidoctor renders them as <code>[id]</code>. Replace these with the title of the referenced section.
+   */
+  private static String resolveReferences(String html) {
+    Map<String, String> titles = new HashMap<>();
+    Matcher title = SECTION_TITLE.matcher(html);
+    while (title.find()) {
+      titles.putIfAbsent(title.group(1), title.group(2).replaceAll("<[^>]*>", ""));
+    }
+    Matcher xref = UNRESOLVED_XREF.matcher(html);
+    StringBuffer sb = new StringBuffer();
+    while (xref.find()) {
+      String text = titles.get(xref.group(1));
+      if (text != null) {
+        xref.appendReplacement(sb, Matcher.quoteReplacement("<a href=\"#" + xref.group(1) + "\">" + text + "</a>"));
+      } else {
+        xref.appendReplacement(sb, Matcher.quoteReplacement(xref.group()));
+      }
+    }
+    xref.appendTail(sb);
+    return sb.toString();
+  }
+
+}
@@ -0,0 +1,32 @@
+package org.asciidoc.intellij;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * MD5 hashes as used for cache keys, fingerprints and image URLs.
+ */
+public final class Md5 {
+
+  private Md5() {
+  }
+
+  public static MessageDigest create() {
+    try {
+      return MessageDigest.getInstance("MD5");
+    } catch (NoSuchAlgorithmException e) {
+      throw new RuntimeException("unknown hash", e);
+    }
+  }
+
+  /**
+   * Format a digest as lower case hex.
+   */
+  public static String hex(byte[] digest) {
+    StringBuilder sb = new StringBuilder(digest.length * 2);
+    for (byte b : digest) {
+      sb.append(Integer.toString((b & 0xff) + 0x100, 16).substring(1));
+    }
+    return sb.toString();
+  }
+}
@@ -0,0 +1,243 @@
+package org.asciidoc.intellij;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ProjectRootManager;
+import com.intellij.openapi.util.Computable;
+import com.intellij.openapi.vfs.VfsUtilCore;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.problems.Problem;
+import com.intellij.problems.WolfTheProblemSolver;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.asciidoc.intellij.file.AsciiDocFileType;
+import org.asciidoctor.log.LogRecord;
+import org.asciidoctor.log.Severity;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Validates all AsciiDoc files of a project in the background and reports their errors to the
+ * {@link WolfTheProblemSolver}, so that they show up in the project view like the errors of open files found by the
+ * {@link org.asciidoc.intellij.annotator.ExternalAnnotator}. The files are validated in parallel, one per
+ * Asciidoctor instance of the pool, leaving one instance for the preview and the editor. The errors are kept in the {@link AsciiDocValidationCache}, a file is validated
+ * again only if its content, its configuration or one of its includes changed.
+ */
+public class ProjectValidator {
+
+  private static final Logger LOG = Logger.getInstance(ProjectValidator.class);
+
+  private final Project project;
+
+  public ProjectValidator(@NotNull Project project) {
+    this.project = project;
+  }
+
+  /**
+   * Validate the files. The files and their includes are read from the IDE, so unsaved changes are validated as well.
+   * The errors are reported once all files have been validated.
+   *
+   * @throws ProcessCanceledException if the indicator has been cancelled, results until then are kept in the cache
+   */
+  @NotNull
+  public Result validate(@NotNull ProgressIndicator indicator) throws IOException {
+    indicator.setIndeterminate(true);
+    indicator.setText("Collecting AsciiDoc files");
+    List<Input> inputs = ApplicationManager.getApplication().runReadAction((Computable<List<Input>>) this::collect);
+    List<String> extensions = AsciiDoc.getExtensions(project);
+    String globalKey = BatchConversion.globalKey(project, extensions);
+    AsciiDocValidationCache cache = AsciiDocValidationCache.getInstance(project);
+    Map<VirtualFile, List<AsciiDocValidationCache.Message>> messages = new ConcurrentHashMap<>();
+    Result result = new Result();
+
+    indicator.setIndeterminate(false);
+    indicator.setText("Validating AsciiDoc files");
+    AtomicInteger done = new AtomicInteger();
+    ExecutorService executor = AppExecutorUtil.createBoundedApplicationPoolExecutor("AsciiDoc validation",
+      Math.max(1, AsciiDoc.getPoolSize() - 1));
+    List<Future<?>> futures = new ArrayList<>();
+    try {
+      for (Input input : inputs) {
+        futures.add(executor.submit(() -> {
+          if (indicator.isCanceled()) {
+            return;
+          }
+          indicator.setText2(input.file.getPresentableUrl());
+          validate(input, extensions, globalKey, cache, messages, result);
+          indicator.setFraction((double) done.incrementAndGet() / inputs.size());
+        }));
+      }
+      for (Future<?> future : futures) {
+        BatchConversion.waitFor(future, indicator);
+      }
+    } finally {
+      futures.forEach(future -> future.cancel(false));
+      executor.shutdown();
+      List<String> paths = new ArrayList<>();
+      inputs.forEach(input -> paths.add(input.file.getPath()));
+      if (!indicator.isCanceled()) {
+        cache.retain(paths);
+      }
+      cache.save();
+    }
+    indicator.setText2("");
+    report(messages);
+    return result;
+  }
+
+  private void validate(Input input, List<String> extensions, String globalKey, AsciiDocValidationCache cache,
+                        Map<VirtualFile, List<AsciiDocValidationCache.Message>> messages, Result result) {
+    String path = input.file.getPath();
+    try {
+      String key = BatchConversion.key(input.text, input.attributes, globalKey, input.baseDir.toPath());
+      List<AsciiDocValidationCache.Message> cached = cache.get(path, key);
+      if (cached != null) {
+        result.skipped.incrementAndGet();
+      } else {
+        List<AsciiDocValidationCache.Message> found = new ArrayList<>();
+        AsciiDoc asciiDoc = new AsciiDoc(project, input.baseDir, null, input.file.getName());
+        asciiDoc.validate(input.text, input.attributes, extensions,
+          (boasOut, boasErr, logRecords) -> logRecords.forEach(logRecord -> {
+            AsciiDocValidationCache.Message message = toMessage(logRecord, input.offsetLineNo);
+            if (message != null) {
+              found.add(message);
+            }
+          }));
+        cache.put(path, key, found);
+        result.validated.incrementAndGet();
+        cached = found;
+      }
+      if (!cached.isEmpty()) {
+        result.withErrors.incrementAndGet();
+      }
+      messages.put(input.file, cached);
+    } catch (ProcessCanceledException e) {
+      throw e;
+    } catch (Exception e) {
+      LOG.warn("unable to validate " + path, e);
+      result.failed.add(input.file.getPresentableUrl());
+    }
+  }
+
+  /**
+   * Convert a log record to the message reported for the file, using the same rules as the
+   * {@link org.asciidoc.intellij.annotator.ExternalAnnotator}: only errors are reported, and records from the
+   * prepended configuration are shown on the first line.
+   *
+   * @return the message, or <code>null</code> if the record isn't reported
+   */
+  static AsciiDocValidationCache.Message toMessage(LogRecord logRecord, int offsetLineNo) {
+    if (logRecord.getSeverity().compareTo(Severity.ERROR) < 0 || logRecord.getSeverity() == Severity.UNKNOWN
+      || logRecord.getMessage().startsWith("possible invalid reference:")) {
+      return null;
+    }
+    int line = 0;
+    if (logRecord.getCursor() != null && logRecord.getCursor().getFile() == null
+      && logRecord.getCursor().getLineNumber() >= 0) {
+      line = Math.max(0, logRecord.getCursor().getLineNumber() - offsetLineNo - 1);
+    }
+    return new AsciiDocValidationCache.Message(line, logRecord.getMessage());
+  }
+
+  /**
+   * Report the errors of all files in one go, this also clears the errors of files that have been fixed.
+   */
+  private void report(Map<VirtualFile, List<AsciiDocValidationCache.Message>> messages) {
+    ApplicationManager.getApplication().invokeLater(() -> {
+      WolfTheProblemSolver theProblemSolver = WolfTheProblemSolver.getInstance(project);
+      for (Map.Entry<VirtualFile, List<AsciiDocValidationCache.Message>> entry : messages.entrySet()) {
+        VirtualFile file = entry.getKey();
+        if (!file.isValid()) {
+          continue;
+        }
+        List<Problem> problems = new ArrayList<>();
+        for (AsciiDocValidationCache.Message message : entry.getValue()) {
+          problems.add(theProblemSolver.convertToProblem(file, message.getLine(), 0, new String[]{message.getText()}));
+        }
+        // consider using reportProblemsFromExternalSource available from 2019.x?
+        theProblemSolver.reportProblems(file, problems);
+      }
+    }, project.getDisposed());
+  }
+
+  /**
+   * Find the AsciiDoc files in the content of the project, excluded folders are skipped.
+   */
+  private List<Input> collect() {
+    List<Input> inputs = new ArrayList<>();
+    ProjectRootManager.getInstance(project).getFileIndex().iterateContent(file -> {
+      if (file.isDirectory() || file.getFileType() != AsciiDocFileType.INSTANCE || !file.isInLocalFileSystem()
+        || file.getParent() == null) {
+        return true;
+      }
+      try {
+        Document document = FileDocumentManager.getInstance().getCachedDocument(file);
+        String text = document != null ? document.getText() : VfsUtilCore.loadText(file);
+        AtomicInteger offsetLineNo = new AtomicInteger();
+        inputs.add(new Input(file, new File(file.getParent().getPath()),
+          AsciiDoc.prependConfig(file, text, project, offsetLineNo::set),
+          AsciiDoc.getConfigAttributes(file, project), offsetLineNo.get()));
+      } catch (IOException e) {
+        LOG.warn("unable to read " + file.getPath(), e);
+      }
+      return true;
+    });
+    return inputs;
+  }
+
+  /**
+   * Number of files validated, skipped as unchanged, with errors, and failed.
+   */
+  public static final class Result {
+    private final AtomicInteger validated = new AtomicInteger();
+    private final AtomicInteger skipped = new AtomicInteger();
+    private final AtomicInteger withErrors = new AtomicInteger();
+    private final List<String> failed = Collections.synchronizedList(new ArrayList<>());
+
+    public int getValidated() {
+      return validated.get();
+    }
+
+    public int getSkipped() {
+      return skipped.get();
+    }
+
+    public int getWithErrors() {
+      return withErrors.get();
+    }
+
+    public List<String> getFailed() {
+      return failed;
+    }
+  }
+
+  private static final class Input {
+    private final VirtualFile file;
+    private final File baseDir;
+    private final String text;
+    private final Map<String, Object> attributes;
+    private final int offsetLineNo;
+
+    private Input(VirtualFile file, File baseDir, String text, Map<String, Object> attributes, int offsetLineNo) {
+      this.file = file;
+      this.baseDir = baseDir;
+      this.text = text;
+      this.attributes = attributes;
+      this.offsetLineNo = offsetLineNo;
+    }
+  }
+}
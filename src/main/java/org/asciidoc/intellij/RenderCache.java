@@ -0,0 +1,222 @@
+package org.asciidoc.intellij;
+
+import org.asciidoctor.log.LogRecord;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Memory-bounded LRU cache of render results, keyed by a hash of the content and the effective options.
+ * Both the preview and the annotator convert the same content on each keystroke; whichever runs second
+ * will be served from this cache.
+ */
+public class RenderCache {
+
+  /**
+   * The output folder for generated images differs between consumers, therefore it is not part of the key.
+   */
+  private static final String OUTDIR = "outdir";
+
+  private static final int ENTRY_OVERHEAD = 64;
+
+  private final long maxWeight;
+
+  private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+  private long weight;
+
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+
+  public RenderCache(long maxWeight) {
+    this.maxWeight = maxWeight;
+  }
+
+  /**
+   * Default size in bytes, can be overridden with the system property <code>asciidoc.render.cache.mb</code>.
+   */
+  public static long defaultSize() {
+    return Long.getLong("asciidoc.render.cache.mb", 32) * 1024 * 1024;
+  }
+
+  /**
+   * Calculate the cache key for a conversion.
+   *
+   * @param text          content to be converted, including any prepended configuration
+   * @param extensionHash hash of the extensions active for the conversion
+   * @param options       options passed to Asciidoctor, including base directory and attributes
+   * @param stamp         additional state the result depends on, like the modification count of referenced files
+   */
+  public static String key(String text, String extensionHash, Map<String, Object> options, long stamp) {
+    MessageDigest md = Md5.create();
+    md.update(text.getBytes(StandardCharsets.UTF_8));
+    md.update((byte) 0);
+    md.update(extensionHash.getBytes(StandardCharsets.UTF_8));
+    md.update((byte) 0);
+    md.update(Long.toString(stamp).getBytes(StandardCharsets.UTF_8));
+    updateWithMap(md, options);
+    return Md5.hex(md.digest());
+  }
+
+  private static void updateWithMap(MessageDigest md, Map<?, ?> map) {
+    for (Map.Entry<String, ?> entry : toStringKeys(map).entrySet()) {
+      if (OUTDIR.equals(entry.getKey())) {
+        continue;
+      }
+      md.update((byte) 0);
+      md.update(entry.getKey().getBytes(StandardCharsets.UTF_8));
+      md.update((byte) '=');
+      if (entry.getValue() instanceof Map) {
+        md.update((byte) '{');
+        updateWithMap(md, (Map<?, ?>) entry.getValue());
+        md.update((byte) '}');
+      } else {
+        md.update(String.valueOf(entry.getValue()).getBytes(StandardCharsets.UTF_8));
+      }
+    }
+  }
+
+  private static Map<String, ?> toStringKeys(Map<?, ?> map) {
+    Map<String, Object> result = new TreeMap<>();
+    map.forEach((k, v) -> result.put(String.valueOf(k), v));
+    return result;
+  }
+
+  /**
+   * Lookup a previous result.
+   *
+   * @param outdir folder the caller expects generated images in, or <code>null</code> if the caller will
+   *               not use the HTML and any result is acceptable
+   */
+  public Entry get(String key, String outdir) {
+    Entry entry = peek(key, outdir);
+    record(entry != null);
+    return entry;
+  }
+
+  /**
+   * Lookup a previous result without counting a hit or a miss, for callers that try several keys for one
+   * request and {@link #record(boolean)} the outcome once.
+   */
+  public Entry peek(String key, String outdir) {
+    Entry entry;
+    synchronized (this) {
+      entry = entries.get(key);
+    }
+    if (entry != null && (outdir == null || Objects.equals(outdir, entry.getOutdir()))) {
+      return entry;
+    }
+    return null;
+  }
+
+  /**
+   * Count the outcome of a request looked up with {@link #peek(String, String)}.
+   */
+  public void record(boolean hit) {
+    (hit ? hits : misses).incrementAndGet();
+  }
+
+  public synchronized void put(String key, Entry entry) {
+    Entry previous = entries.put(key, entry);
+    if (previous != null) {
+      weight -= previous.getWeight();
+    }
+    weight += entry.getWeight();
+    Iterator<Entry> iterator = entries.values().iterator();
+    while (weight > maxWeight && iterator.hasNext()) {
+      Entry eldest = iterator.next();
+      if (eldest == entry) {
+        // never evict the entry just added
+        break;
+      }
+      weight -= eldest.getWeight();
+      iterator.remove();
+    }
+  }
+
+  public synchronized void clear() {
+    entries.clear();
+    weight = 0;
+  }
+
+  public long getHits() {
+    return hits.get();
+  }
+
+  public long getMisses() {
+    return misses.get();
+  }
+
+  public synchronized long getWeight() {
+    return weight;
+  }
+
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  /**
+   * Hits, misses and size of the cache, to see how effective it is.
+   */
+  public String getSummary() {
+    long h = getHits();
+    long m = getMisses();
+    return String.format(Locale.ROOT, "render cache: %d hits, %d misses (%.0f%% hits), %d entries, %.1f MB", h, m,
+      h + m > 0 ? 100.0 * h / (h + m) : 0.0, size(), getWeight() / 1024.0 / 1024.0);
+  }
+
+  public static class Entry {
+    private final String html;
+    private final List<LogRecord> logRecords;
+    private final String out;
+    private final String err;
+    private final String outdir;
+    private final long weight;
+
+    public Entry(String html, List<LogRecord> logRecords, String out, String err, String outdir) {
+      this.html = html;
+      this.logRecords = Collections.unmodifiableList(logRecords);
+      this.out = out;
+      this.err = err;
+      this.outdir = outdir;
+      long w = ENTRY_OVERHEAD + 2L * (html.length() + out.length() + err.length());
+      for (LogRecord logRecord : logRecords) {
+        w += ENTRY_OVERHEAD + (logRecord.getMessage() != null ? 2L * logRecord.getMessage().length() : 0);
+      }
+      this.weight = w;
+    }
+
+    public String getHtml() {
+      return html;
+    }
+
+    public List<LogRecord> getLogRecords() {
+      return logRecords;
+    }
+
+    public String getOut() {
+      return out;
+    }
+
+    public String getErr() {
+      return err;
+    }
+
+    public String getOutdir() {
+      return outdir;
+    }
+
+    public long getWeight() {
+      return weight;
+    }
+  }
+}
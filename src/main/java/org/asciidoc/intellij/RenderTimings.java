@@ -0,0 +1,239 @@
+package org.asciidoc.intellij;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.Disposer;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Time spent in each stage of rendering a document, kept per file as a rolling window of the most recent
+ * samples. Shown in the <em>AsciiDoc Timings</em> tool window, see
+ * {@link org.asciidoc.intellij.editor.RenderTimingsToolWindowFactory}.
+ */
+public class RenderTimings {
+
+  private static final Logger LOG = Logger.getInstance(RenderTimings.class);
+
+  /**
+   * Stages of a render, in the order they happen.
+   */
+  public enum Stage {
+    CONFIG("config"),
+    DEBOUNCE("wait for changes"),
+    THROTTLE("wait for CPU limit"),
+    QUEUE("wait for worker"),
+    FINGERPRINT("extension fingerprint"),
+    INIT("runtime init"),
+    DIAGRAMS("diagrams"),
+    CONVERT("convert"),
+    VALIDATE("validate"),
+    POST_PROCESS("prepare HTML"),
+    WEBVIEW("WebView load");
+
+    private final String presentableName;
+
+    Stage(String presentableName) {
+      this.presentableName = presentableName;
+    }
+
+    @Override
+    public String toString() {
+      return presentableName;
+    }
+  }
+
+  private final int samples;
+  private final int maxFiles;
+
+  /**
+   * Histograms per file, least recently used first.
+   */
+  private final Map<String, Map<Stage, Histogram>> files;
+
+  private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+
+  public RenderTimings() {
+    this(Integer.getInteger("asciidoc.timings.samples", 100), 100);
+  }
+
+  RenderTimings(int samples, int maxFiles) {
+    this.samples = samples;
+    this.maxFiles = maxFiles;
+    this.files = new LinkedHashMap<String, Map<Stage, Histogram>>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Map<Stage, Histogram>> eldest) {
+        return size() > RenderTimings.this.maxFiles;
+      }
+    };
+  }
+
+  public static RenderTimings getInstance() {
+    return ServiceManager.getService(RenderTimings.class);
+  }
+
+  /**
+   * Add the duration of a stage for a file.
+   */
+  public void record(@NotNull String file, @NotNull Stage stage, long nanos) {
+    synchronized (this) {
+      files.computeIfAbsent(file, f -> new EnumMap<>(Stage.class))
+        .computeIfAbsent(stage, s -> new Histogram(samples))
+        .add(nanos);
+    }
+    listeners.forEach(Runnable::run);
+  }
+
+  /**
+   * Add the duration of a stage that started at the given {@link System#nanoTime()}.
+   */
+  public void recordSince(@NotNull String file, @NotNull Stage stage, long startNanos) {
+    record(file, stage, System.nanoTime() - startNanos);
+  }
+
+  /**
+   * Current statistics, most recently rendered file first.
+   */
+  @NotNull
+  public List<Row> snapshot() {
+    List<Row> rows = new ArrayList<>();
+    synchronized (this) {
+      files.forEach((file, stages) -> stages.forEach((stage, histogram) -> rows.add(histogram.toRow(file, stage))));
+    }
+    List<Row> result = new ArrayList<>(rows.size());
+    // keep the order of the stages, but list the most recently used file first
+    int end = rows.size();
+    while (end > 0) {
+      int start = end - 1;
+      while (start > 0 && rows.get(start - 1).getFile().equals(rows.get(end - 1).getFile())) {
+        --start;
+      }
+      result.addAll(rows.subList(start, end));
+      end = start;
+    }
+    return result;
+  }
+
+  public void clear() {
+    synchronized (this) {
+      files.clear();
+    }
+    listeners.forEach(Runnable::run);
+  }
+
+  /**
+   * Write the current statistics to the IDE's log.
+   */
+  public void dump() {
+    LOG.info("AsciiDoc render timings\n" + format(snapshot()));
+  }
+
+  @NotNull
+  static String format(List<Row> rows) {
+    StringBuilder sb = new StringBuilder(String.format(Locale.ROOT, "%-40s %-22s %6s %9s %9s %9s%n",
+      "file", "stage", "count", "p50 ms", "p95 ms", "max ms"));
+    for (Row row : rows) {
+      sb.append(String.format(Locale.ROOT, "%-40s %-22s %6d %9.1f %9.1f %9.1f%n", row.getFile(), row.getStage(),
+        row.getCount(), row.getP50(), row.getP95(), row.getMax()));
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Get notified when statistics change. The listener is called on the thread recording the timing.
+   */
+  public void addListener(@NotNull Runnable listener, @NotNull Disposable parent) {
+    listeners.add(listener);
+    Disposer.register(parent, () -> listeners.remove(listener));
+  }
+
+  /**
+   * Statistics of a stage of a file, times in milliseconds.
+   */
+  public static final class Row {
+    private final String file;
+    private final Stage stage;
+    private final long count;
+    private final double p50;
+    private final double p95;
+    private final double max;
+
+    Row(String file, Stage stage, long count, double p50, double p95, double max) {
+      this.file = file;
+      this.stage = stage;
+      this.count = count;
+      this.p50 = p50;
+      this.p95 = p95;
+      this.max = max;
+    }
+
+    public String getFile() {
+      return file;
+    }
+
+    public Stage getStage() {
+      return stage;
+    }
+
+    /**
+     * Number of samples recorded, including those that dropped out of the window.
+     */
+    public long getCount() {
+      return count;
+    }
+
+    public double getP50() {
+      return p50;
+    }
+
+    public double getP95() {
+      return p95;
+    }
+
+    public double getMax() {
+      return max;
+    }
+  }
+
+  /**
+   * Ring buffer of the most recent samples.
+   */
+  private static final class Histogram {
+    private final long[] values;
+    private long count;
+
+    private Histogram(int samples) {
+      values = new long[samples];
+    }
+
+    private void add(long nanos) {
+      values[(int) (count % values.length)] = nanos;
+      ++count;
+    }
+
+    private Row toRow(String file, Stage stage) {
+      long[] sorted = Arrays.copyOf(values, (int) Math.min(count, values.length));
+      Arrays.sort(sorted);
+      return new Row(file, stage, count, millis(percentile(sorted, 50)), millis(percentile(sorted, 95)),
+        millis(sorted[sorted.length - 1]));
+    }
+
+    private static long percentile(long[] sorted, int percentile) {
+      int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+      return sorted[Math.max(index, 0)];
+    }
+
+    private static double millis(long nanos) {
+      return nanos / 1_000_000.0;
+    }
+  }
+}
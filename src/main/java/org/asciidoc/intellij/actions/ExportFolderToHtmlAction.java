@@ -0,0 +1,99 @@
+package org.asciidoc.intellij.actions;
+
+import com.intellij.notification.Notification;
+import com.intellij.notification.NotificationType;
+import com.intellij.notification.Notifications;
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.actionSystem.CommonDataKeys;
+import com.intellij.openapi.fileChooser.FileChooser;
+import com.intellij.openapi.fileChooser.FileChooserDescriptor;
+import com.intellij.openapi.fileChooser.FileChooserDescriptorFactory;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VirtualFile;
+import org.asciidoc.intellij.HtmlExporter;
+import org.asciidoc.intellij.editor.AsciiDocPreviewEditor;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Exports all AsciiDoc files of the selected folder to HTML, see {@link HtmlExporter}.
+ */
+public class ExportFolderToHtmlAction extends AnAction {
+
+  @Override
+  public void actionPerformed(@NotNull AnActionEvent event) {
+    Project project = event.getProject();
+    VirtualFile folder = event.getData(CommonDataKeys.VIRTUAL_FILE);
+    if (project == null || folder == null || !folder.isDirectory()) {
+      return;
+    }
+    FileChooserDescriptor descriptor = FileChooserDescriptorFactory.createSingleFolderDescriptor()
+      .withTitle("Export AsciiDoc Folder to HTML")
+      .withDescription("Select the folder to write the HTML files of '" + folder.getName() + "' to");
+    VirtualFile output = FileChooser.chooseFile(descriptor, project, folder.getParent());
+    if (output == null) {
+      return;
+    }
+    if (output.equals(folder)) {
+      Notifications.Bus.notify(AsciiDocPreviewEditor.NOTIFICATION_GROUP.createNotification("Export to HTML",
+        "Select a folder other than the exported folder.", NotificationType.WARNING, null), project);
+      return;
+    }
+    // diagram sources are read from disk
+    FileDocumentManager.getInstance().saveAllDocuments();
+    Path target = new File(output.getPath()).toPath();
+    new Task.Backgroundable(project, "Exporting AsciiDoc to HTML", true) {
+      private HtmlExporter.Result result;
+
+      @Override
+      public void run(@NotNull ProgressIndicator indicator) {
+        try {
+          result = new HtmlExporter(project, folder, target).export(indicator);
+        } catch (IOException e) {
+          Notifications.Bus.notify(AsciiDocPreviewEditor.NOTIFICATION_GROUP.createNotification("Export to HTML",
+            "Export failed: " + e.getMessage(), NotificationType.ERROR, null), project);
+        } finally {
+          VirtualFile outputFolder = LocalFileSystem.getInstance().refreshAndFindFileByIoFile(target.toFile());
+          if (outputFolder != null) {
+            outputFolder.refresh(true, true);
+          }
+        }
+      }
+
+      @Override
+      public void onSuccess() {
+        if (result == null) {
+          return;
+        }
+        StringBuilder message = new StringBuilder();
+        message.append("Exported ").append(result.getExported()).append(" files to ").append(target)
+          .append(", ").append(result.getSkipped()).append(" files were unchanged.");
+        if (!result.getWithErrors().isEmpty()) {
+          message.append("<br>With errors: ").append(String.join(", ", result.getWithErrors()));
+        }
+        if (!result.getFailed().isEmpty()) {
+          message.append("<br>Failed (see log): ").append(String.join(", ", result.getFailed()));
+        }
+        Notification notification = AsciiDocPreviewEditor.NOTIFICATION_GROUP.createNotification("Export to HTML",
+          message.toString(), result.getFailed().isEmpty() && result.getWithErrors().isEmpty()
+            ? NotificationType.INFORMATION : NotificationType.WARNING, null);
+        Notifications.Bus.notify(notification, project);
+      }
+    }.queue();
+  }
+
+  @Override
+  public void update(@NotNull AnActionEvent event) {
+    VirtualFile file = event.getData(CommonDataKeys.VIRTUAL_FILE);
+    event.getPresentation().setEnabledAndVisible(event.getProject() != null && file != null && file.isDirectory()
+      && file.isInLocalFileSystem());
+  }
+}
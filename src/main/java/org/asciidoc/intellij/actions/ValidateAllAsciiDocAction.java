@@ -0,0 +1,110 @@
+package org.asciidoc.intellij.actions;
+
+import com.intellij.notification.NotificationType;
+import com.intellij.notification.Notifications;
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Key;
+import org.asciidoc.intellij.ProjectValidator;
+import org.asciidoc.intellij.editor.AsciiDocPreviewEditor;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+
+/**
+ * Validates all AsciiDoc files of the project in the background, see {@link ProjectValidator}.
+ */
+public class ValidateAllAsciiDocAction extends AnAction {
+
+  /**
+   * Validation of a project that is running, if any.
+   */
+  private static final Key<Running> RUNNING = Key.create("AsciiDoc validation running");
+
+  @Override
+  public void actionPerformed(@NotNull AnActionEvent event) {
+    Project project = event.getProject();
+    if (project == null) {
+      return;
+    }
+    queue(project, true);
+  }
+
+  /**
+   * Start the validation as a background task. Only one validation of a project runs at a time: if one is running
+   * already, a single further validation starts once it has finished, no matter how often it has been requested,
+   * as files might have changed in the meantime. Call this on the EDT.
+   *
+   * @param notify show a summary when the validation is finished, errors are shown in the project view in any case
+   */
+  public static void queue(@NotNull Project project, boolean notify) {
+    Running running = project.getUserData(RUNNING);
+    if (running != null) {
+      running.again = true;
+      running.notify |= notify;
+      return;
+    }
+    project.putUserData(RUNNING, new Running());
+    start(project, notify);
+  }
+
+  private static void start(@NotNull Project project, boolean notify) {
+    new Task.Backgroundable(project, "Validating AsciiDoc files", true) {
+      private ProjectValidator.Result result;
+
+      @Override
+      public void run(@NotNull ProgressIndicator indicator) {
+        try {
+          result = new ProjectValidator(project).validate(indicator);
+        } catch (IOException e) {
+          Notifications.Bus.notify(AsciiDocPreviewEditor.NOTIFICATION_GROUP.createNotification("Validate AsciiDoc",
+            "Validation failed: " + e.getMessage(), NotificationType.ERROR, null), project);
+        }
+      }
+
+      @Override
+      public void onSuccess() {
+        if (result == null || !notify && result.getFailed().isEmpty()) {
+          return;
+        }
+        StringBuilder message = new StringBuilder();
+        message.append("Validated ").append(result.getValidated()).append(" files, ")
+          .append(result.getSkipped()).append(" files were unchanged. ")
+          .append(result.getWithErrors()).append(" files have errors.");
+        if (!result.getFailed().isEmpty()) {
+          message.append("<br>Failed (see log): ").append(String.join(", ", result.getFailed()));
+        }
+        Notifications.Bus.notify(AsciiDocPreviewEditor.NOTIFICATION_GROUP.createNotification("Validate AsciiDoc",
+          message.toString(), result.getFailed().isEmpty() && result.getWithErrors() == 0
+            ? NotificationType.INFORMATION : NotificationType.WARNING, null), project);
+      }
+
+      @Override
+      public void onFinished() {
+        Running running = project.getUserData(RUNNING);
+        if (running == null || !running.again || project.isDisposed()) {
+          project.putUserData(RUNNING, null);
+          return;
+        }
+        project.putUserData(RUNNING, new Running());
+        start(project, running.notify);
+      }
+    }.queue();
+  }
+
+  /**
+   * Whether another validation has been requested while a validation was running, and if it should show a summary.
+   */
+  private static final class Running {
+    private boolean again;
+    private boolean notify;
+  }
+
+  @Override
+  public void update(@NotNull AnActionEvent event) {
+    event.getPresentation().setEnabledAndVisible(event.getProject() != null);
+  }
+}
@@ -4,18 +4,22 @@ import com.intellij.openapi.editor.Editor;
 import com.intellij.psi.PsiFile;
 
 import java.util.List;
+import java.util.Map;
 
 public class AsciidocInfoType {
   private final PsiFile file;
   private final Editor editor;
   private final String contentWithConfig;
+  private final Map<String, Object> attributes;
   private final List<String> extensions;
   private final int offsetLineNo;
 
-  public AsciidocInfoType(PsiFile file, Editor editor, String contentWithConfig, List<String> extensions, int offsetLineNo) {
+  public AsciidocInfoType(PsiFile file, Editor editor, String contentWithConfig, Map<String, Object> attributes,
+                          List<String> extensions, int offsetLineNo) {
     this.file = file;
     this.editor = editor;
     this.contentWithConfig = contentWithConfig;
+    this.attributes = attributes;
     this.extensions = extensions;
     this.offsetLineNo = offsetLineNo;
   }
@@ -32,6 +36,10 @@ public class AsciidocInfoType {
     return contentWithConfig;
   }
 
+  public Map<String, Object> getAttributes() {
+    return attributes;
+  }
+
   public List<String> getExtensions() {
     return extensions;
   }
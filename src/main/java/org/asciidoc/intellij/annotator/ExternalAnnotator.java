@@ -3,7 +3,6 @@ package org.asciidoc.intellij.annotator;
 import com.intellij.lang.annotation.Annotation;
 import com.intellij.lang.annotation.AnnotationHolder;
 import com.intellij.lang.annotation.HighlightSeverity;
-import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.editor.Editor;
 import com.intellij.openapi.fileEditor.FileDocumentManager;
 import com.intellij.openapi.util.TextRange;
@@ -11,21 +10,19 @@ import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.problems.Problem;
 import com.intellij.problems.WolfTheProblemSolver;
 import com.intellij.psi.PsiFile;
-import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang.StringUtils;
 import org.asciidoc.intellij.AsciiDoc;
-import org.asciidoc.intellij.editor.AsciiDocPreviewEditor;
+import org.asciidoc.intellij.RenderTimings;
 import org.asciidoctor.log.LogRecord;
 import org.asciidoctor.log.Severity;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
-import java.io.IOException;
-import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -39,10 +36,13 @@ public class ExternalAnnotator extends com.intellij.lang.annotation.ExternalAnno
   @Nullable
   @Override
   public AsciidocInfoType collectInformation(@NotNull PsiFile file, @NotNull Editor editor, boolean hasErrors) {
+    long start = System.nanoTime();
     AtomicInteger offsetLineNo = new AtomicInteger(0);
     final String contentWithConfig = AsciiDoc.prependConfig(editor.getDocument(), file.getProject(), offsetLineNo::set);
+    Map<String, Object> attributes = AsciiDoc.getConfigAttributes(editor.getDocument(), file.getProject());
+    RenderTimings.getInstance().recordSince(file.getName(), RenderTimings.Stage.CONFIG, start);
     List<String> extensions = AsciiDoc.getExtensions(file.getProject());
-    return new AsciidocInfoType(file, editor, contentWithConfig, extensions, offsetLineNo.get());
+    return new AsciidocInfoType(file, editor, contentWithConfig, attributes, extensions, offsetLineNo.get());
   }
 
   @Nullable
@@ -59,21 +59,11 @@ public class ExternalAnnotator extends com.intellij.lang.annotation.ExternalAnno
 
     AsciidocAnnotationResultType asciidocAnnotationResultType = new AsciidocAnnotationResultType(editor.getDocument(),
       collectedInfo.getOffsetLineNo());
-    Path tempImagesPath = AsciiDoc.tempImagesPath();
-    try {
-      AsciiDoc asciiDoc = new AsciiDoc(file.getProject().getBasePath(), fileBaseDir,
-        tempImagesPath, FileDocumentManager.getInstance().getFile(editor.getDocument()).getName());
-      asciiDoc.render(collectedInfo.getContentWithConfig(), collectedInfo.getExtensions(), (boasOut, boasErr, logRecords)
-        -> asciidocAnnotationResultType.addLogRecords(logRecords));
-    } finally {
-      if (tempImagesPath != null) {
-        try {
-          FileUtils.deleteDirectory(tempImagesPath.toFile());
-        } catch (IOException _ex) {
-          Logger.getInstance(AsciiDocPreviewEditor.class).warn("could not remove temp folder", _ex);
-        }
-      }
-    }
+    // validation doesn't generate images, therefore no folder for images is needed
+    AsciiDoc asciiDoc = new AsciiDoc(file.getProject(), fileBaseDir,
+      null, FileDocumentManager.getInstance().getFile(editor.getDocument()).getName());
+    asciiDoc.validate(collectedInfo.getContentWithConfig(), collectedInfo.getAttributes(), collectedInfo.getExtensions(),
+      (boasOut, boasErr, logRecords) -> asciidocAnnotationResultType.addLogRecords(logRecords));
 
     return asciidocAnnotationResultType;
   }
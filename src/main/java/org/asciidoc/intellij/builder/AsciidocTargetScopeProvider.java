@@ -2,49 +2,30 @@ package org.asciidoc.intellij.builder;
 
 import com.intellij.codeInsight.daemon.DaemonCodeAnalyzer;
 import com.intellij.compiler.impl.BuildTargetScopeProvider;
+import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.compiler.CompileScope;
 import com.intellij.openapi.compiler.CompilerFilter;
-import com.intellij.openapi.module.Module;
-import com.intellij.openapi.module.ModuleManager;
 import com.intellij.openapi.project.Project;
-import com.intellij.openapi.roots.ModuleRootManager;
-import com.intellij.problems.WolfTheProblemSolver;
-import com.intellij.psi.PsiFile;
-import com.intellij.psi.PsiManager;
-import org.asciidoc.intellij.file.AsciiDocFileType;
+import org.asciidoc.intellij.actions.ValidateAllAsciiDocAction;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.jps.api.CmdlineRemoteProto;
 
 import java.util.List;
 
 /**
- * This is a dummy provider to clear all error in asciidoctor files and re-trigger a code analyze for the
- * currently selected/open files using {@link DaemonCodeAnalyzer}.
+ * This is a dummy provider to validate all asciidoctor files in the background using {@link org.asciidoc.intellij.ProjectValidator}
+ * and re-trigger a code analyze for the currently open files using {@link DaemonCodeAnalyzer}.
  */
 public class AsciidocTargetScopeProvider extends BuildTargetScopeProvider {
   @NotNull
   @Override
   public List<CmdlineRemoteProto.Message.ControllerMessage.ParametersMessage.TargetTypeBuildScope> getBuildTargetScopes(@NotNull CompileScope baseScope, @NotNull CompilerFilter filter, @NotNull Project project, boolean forceBuild) {
-    for (Module module : ModuleManager.getInstance(project).getModules()) {
-      clearProblemsForAsciidocFiles(module, project);
-    }
+    ApplicationManager.getApplication().invokeLater(() -> {
+      // the validation reports the problems of all files at once, and only re-validates files that changed
+      ValidateAllAsciiDocAction.queue(project, false);
+      // the DaemonCodeAnalyzer will only trigger for any open file
+      DaemonCodeAnalyzer.getInstance(project).restart();
+    }, project.getDisposed());
     return super.getBuildTargetScopes(baseScope, filter, project, forceBuild);
   }
-
-  private static void clearProblemsForAsciidocFiles(Module module, Project project) {
-    WolfTheProblemSolver theProblemSolver = WolfTheProblemSolver.getInstance(project);
-    ModuleRootManager.getInstance(module).getFileIndex().iterateContent(file -> {
-      if (!file.isDirectory() && AsciiDocFileType.INSTANCE == file.getFileType()) {
-        // this will clear the problems for all Asciidoc files in the modules
-        // consider using clearProblemsFromExternalSource available from 2019.x?
-        theProblemSolver.clearProblems(file);
-        PsiFile psiFile = PsiManager.getInstance(project).findFile(file);
-        if (psiFile != null) {
-          // the DaemonCodeAnalyzer will only trigger for any open file (independent of the file we pass here)
-          DaemonCodeAnalyzer.getInstance(project).restart(psiFile);
-        }
-      }
-      return true;
-    });
-  }
 }
@@ -25,9 +25,11 @@ import com.intellij.notification.NotificationType;
 import com.intellij.notification.Notifications;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.application.ModalityState;
+import com.intellij.openapi.application.ReadAction;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.editor.Document;
 import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.editor.EditorFactory;
 import com.intellij.openapi.editor.event.DocumentAdapter;
 import com.intellij.openapi.editor.event.DocumentEvent;
 import com.intellij.openapi.fileEditor.FileDocumentManager;
@@ -35,16 +37,27 @@ import com.intellij.openapi.fileEditor.FileEditor;
 import com.intellij.openapi.fileEditor.FileEditorLocation;
 import com.intellij.openapi.fileEditor.FileEditorState;
 import com.intellij.openapi.fileEditor.FileEditorStateLevel;
+import com.intellij.openapi.progress.ProcessCanceledException;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.Disposer;
 import com.intellij.openapi.util.UserDataHolderBase;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.events.VFileEvent;
 import com.intellij.psi.PsiDocumentManager;
 import com.intellij.psi.PsiFile;
+import com.intellij.psi.util.PsiTreeUtil;
 import com.intellij.util.Alarm;
 import com.intellij.util.messages.MessageBusConnection;
 import org.apache.commons.io.FileUtils;
 import org.asciidoc.intellij.AsciiDoc;
+import org.asciidoc.intellij.AsciiDocDiagramCache;
+import org.asciidoc.intellij.AsciiDocIncludeService;
+import org.asciidoc.intellij.DiagramPrepass;
+import org.asciidoc.intellij.IncrementalRenderer;
+import org.asciidoc.intellij.RenderTimings;
+import org.asciidoc.intellij.psi.AsciiDocSection;
 import org.asciidoc.intellij.settings.AsciiDocApplicationSettings;
 import org.asciidoc.intellij.settings.AsciiDocPreviewSettings;
 import org.jetbrains.annotations.Contract;
@@ -54,13 +67,17 @@ import org.jetbrains.annotations.Nullable;
 
 import javax.swing.*;
 import java.awt.*;
+import java.awt.event.HierarchyEvent;
 import java.beans.PropertyChangeListener;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.Callable;
-import java.util.concurrent.FutureTask;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BooleanSupplier;
 
 /**
  * @author Julien Viet
@@ -73,15 +90,54 @@ public class AsciiDocPreviewEditor extends UserDataHolderBase implements FileEdi
   private Logger log = Logger.getInstance(AsciiDocPreviewEditor.class);
 
   /**
-   * single threaded with one task queue (one for each editor window).
+   * Milliseconds to wait for more changes of included files before rendering, so that a burst of changes
+   * (for example saving all files, or a refactoring) results in a single render.
    */
-  private final LazyApplicationPoolExecutor lazyExecutor = new LazyApplicationPoolExecutor();
+  private static final int INCLUDES_CHANGED_DELAY = Integer.getInteger("asciidoc.preview.includes.delay", 300);
+
+  /**
+   * single threaded with one task queue (one for each editor window), renders run in the project's
+   * {@link PreviewRenderQueue}.
+   */
+  private final RenderScheduler renderScheduler;
+
+  /**
+   * Indicates whether the preview panel is showing, updated on the EDT so that the {@link PreviewRenderQueue} can
+   * read it from its workers.
+   */
+  private volatile boolean showing = false;
 
   /**
    * Indicates whether the HTML preview is obsolete and should regenerated from the AsciiDoc {@link #document}.
    */
   private transient String currentContent = "";
 
+  /**
+   * Attributes from the configuration that have been passed when rendering {@link #currentContent}.
+   */
+  private transient Map<String, Object> currentAttributes = Collections.emptyMap();
+
+  /**
+   * Files included by the {@link #document}, directly or via other included files, as of the last render.
+   */
+  private volatile Set<VirtualFile> includes = Collections.emptySet();
+
+  /**
+   * Indicates that an included file has changed since the last render, and the preview needs to render
+   * even if the {@link #currentContent} is the same.
+   */
+  private volatile boolean includesChanged = false;
+
+  /**
+   * Modification count of the VFS when the preview has been rendered last.
+   */
+  private volatile long renderedVfsStamp = -1;
+
+  /**
+   * Modification stamp of the document that is currently rendered, -1 if no render is running.
+   */
+  private volatile long renderingStamp = -1;
+
   private transient int targetLineNo = 0;
   private transient int offsetLineNo = 0;
   private transient int currentLineNo = 0;
@@ -93,9 +149,19 @@ public class AsciiDocPreviewEditor extends UserDataHolderBase implements FileEdi
   private Project project;
 
   /**
-   * The directory which holds the temporary images.
+   * Name of the file to record the {@link RenderTimings} for.
+   */
+  private final String fileName;
+
+  /**
+   * The directory which holds the images, either a folder of the {@link AsciiDocDiagramCache} or a temporary folder.
+   */
+  private final Path imagesPath;
+
+  /**
+   * True if the images are kept in the {@link AsciiDocDiagramCache} and must not be deleted on dispose.
    */
-  private final Path tempImagesPath;
+  private final boolean cachedImages;
 
   @NotNull
   private final JPanel myHtmlPanelWrapper;
@@ -106,34 +172,89 @@ public class AsciiDocPreviewEditor extends UserDataHolderBase implements FileEdi
   @NotNull
   private final Alarm mySwingAlarm = new Alarm(Alarm.ThreadToUse.SWING_THREAD, this);
 
+  @NotNull
+  private final Alarm myIncludesAlarm = new Alarm(Alarm.ThreadToUse.SWING_THREAD, this);
+
   /**
-   * .
+   * Created with the first render, renders of this editor run one after another.
    */
-  private FutureTask<AsciiDoc> asciidoc = new FutureTask<>(new Callable<AsciiDoc>() {
-    public AsciiDoc call() {
+  private volatile AsciiDoc asciidoc;
+
+  private AsciiDoc getAsciiDoc() {
+    if (asciidoc == null) {
       File fileBaseDir = new File("");
       VirtualFile parent = FileDocumentManager.getInstance().getFile(document).getParent();
       if (parent != null) {
         // parent will be null if we use Language Injection and Fragment Editor
         fileBaseDir = new File(parent.getCanonicalPath());
       }
-      return new AsciiDoc(project.getBasePath(), fileBaseDir,
-        tempImagesPath, FileDocumentManager.getInstance().getFile(document).getName());
+      asciidoc = new AsciiDoc(project, fileBaseDir,
+        imagesPath, FileDocumentManager.getInstance().getFile(document).getName());
     }
-  });
+    return asciidoc;
+  }
 
   private void render() {
+    // section boundaries and diagrams are taken from the PSI, therefore wait until it is in sync with the document
+    PsiDocumentManager.getInstance(project).performForCommittedDocument(document, this::renderContent);
+  }
+
+  private void renderContent() {
+    long start = System.nanoTime();
     final String contentWithConfig = AsciiDoc.prependConfig(document, project, o -> offsetLineNo = o);
+    final Map<String, Object> attributes = AsciiDoc.getConfigAttributes(document, project);
+    RenderTimings.getInstance().recordSince(fileName, RenderTimings.Stage.CONFIG, start);
     List<String> extensions = AsciiDoc.getExtensions(project);
+    AsciiDocPreviewSettings previewSettings = AsciiDocApplicationSettings.getInstance().getAsciiDocPreviewSettings();
+    List<Integer> sectionLines = null;
+    if (previewSettings.isIncrementalPreview() && IncrementalRenderer.supportsAttributes(attributes)
+      && IncrementalRenderer.supportsAttributes(previewSettings.getAttributes())) {
+      sectionLines = findSectionLines(offsetLineNo);
+    }
+    final List<Integer> fragments = sectionLines;
+    final long stamp = document.getModificationStamp();
+    final long vfsStamp = VirtualFileManager.getInstance().getModificationCount();
+    VirtualFile file = FileDocumentManager.getInstance().getFile(document);
+    if (file != null) {
+      includes = AsciiDocIncludeService.getInstance(project).getIncludes(file);
+    }
 
-    lazyExecutor.execute(new Runnable() {
+    renderScheduler.execute(new BooleanSupplier() {
       @Override
-      public void run() {
+      public boolean getAsBoolean() {
+        boolean rendered = false;
         try {
-          if (!contentWithConfig.equals(currentContent)) {
+          if (!contentWithConfig.equals(currentContent) || !attributes.equals(currentAttributes) || includesChanged) {
             currentContent = contentWithConfig;
-
-            String markup = asciidoc.get().render(currentContent, extensions);
+            currentAttributes = attributes;
+            includesChanged = false;
+
+            AsciiDoc instance = getAsciiDoc();
+            renderingStamp = stamp;
+            String markup = null;
+            try {
+              instance.renderDiagrams(currentContent,
+                () -> ReadAction.compute(() -> findDiagrams(contentWithConfig, stamp)), attributes, extensions);
+              if (fragments != null) {
+                markup = IncrementalRenderer.render(currentContent, fragments,
+                  fragment -> instance.render(fragment, attributes, extensions));
+              }
+              if (markup == null) {
+                markup = instance.render(currentContent, attributes, extensions);
+              }
+            } catch (ProcessCanceledException e) {
+              // document has been modified while rendering, a new render has already been scheduled
+              currentContent = "";
+              if (stamp == document.getModificationStamp()) {
+                // cancellation arrived late and hit the render of the current version, render it again
+                ApplicationManager.getApplication().invokeLater(AsciiDocPreviewEditor.this::renderIfVisible);
+              }
+              return false;
+            } finally {
+              renderingStamp = -1;
+            }
+            rendered = true;
+            renderedVfsStamp = vfsStamp;
             if (markup != null) {
               myPanel.setHtml(markup);
             }
@@ -143,8 +264,6 @@ public class AsciiDocPreviewEditor extends UserDataHolderBase implements FileEdi
             myPanel.scrollToLine(targetLineNo, document.getLineCount(), offsetLineNo);
           }
           ApplicationManager.getApplication().invokeLater(myHtmlPanelWrapper::repaint);
-        } catch (InterruptedException e) {
-          Thread.currentThread().interrupt();
         } catch (Exception ex) {
           String message = "Error rendering preview: " + ex.getMessage();
           log.error(message, ex);
@@ -154,10 +273,87 @@ public class AsciiDocPreviewEditor extends UserDataHolderBase implements FileEdi
           notification.setImportant(true);
           Notifications.Bus.notify(notification);
         }
+        return rendered;
       }
     });
   }
 
+  /**
+   * Find the diagrams of the document, so that they can be generated in parallel before the document is rendered.
+   * Call this in a read action.
+   *
+   * @param stamp modification stamp of the document when the content has been taken, no diagrams are returned
+   *              if the document has changed since
+   */
+  @NotNull
+  private List<String> findDiagrams(String contentWithConfig, long stamp) {
+    PsiDocumentManager pm = PsiDocumentManager.getInstance(project);
+    PsiFile psiFile = pm.getPsiFile(document);
+    if (psiFile == null || document.getModificationStamp() != stamp || !pm.isCommitted(document)) {
+      return Collections.emptyList();
+    }
+    String config = contentWithConfig.substring(0, contentWithConfig.length() - document.getTextLength());
+    return DiagramPrepass.findDiagrams(psiFile, config);
+  }
+
+  /**
+   * Find the lines where the top-level sections start, skipping the section of the document title that
+   * wraps all other sections.
+   *
+   * @return line numbers in the content with the prepended configuration, or <code>null</code> if the
+   * document isn't split into sections
+   */
+  @Nullable
+  private List<Integer> findSectionLines(int offset) {
+    PsiDocumentManager pm = PsiDocumentManager.getInstance(project);
+    PsiFile psiFile = pm.getPsiFile(document);
+    if (psiFile == null || !pm.isCommitted(document)) {
+      return null;
+    }
+    AsciiDocSection[] sections = PsiTreeUtil.getChildrenOfType(psiFile, AsciiDocSection.class);
+    if (sections != null && sections.length == 1 && sections[0].getHeadingLevel() == 1) {
+      sections = PsiTreeUtil.getChildrenOfType(sections[0], AsciiDocSection.class);
+    }
+    if (sections == null) {
+      return null;
+    }
+    List<Integer> lines = new ArrayList<>();
+    for (AsciiDocSection section : sections) {
+      if (section.getHeadingLevel() != 2) {
+        return null;
+      }
+      lines.add(document.getLineNumber(section.getTextRange().getStartOffset()) + offset);
+    }
+    return lines;
+  }
+
+  /**
+   * Abort a running render of an older version of the document, so that the render of the current
+   * version doesn't need to wait for it.
+   */
+  private void cancelStaleRender() {
+    long stamp = renderingStamp;
+    AsciiDoc instance = asciidoc;
+    if (stamp != -1 && stamp != document.getModificationStamp() && instance != null) {
+      // raise the interrupt on a pooled thread, as JRuby registers the calling thread with its runtime
+      ApplicationManager.getApplication().executeOnPooledThread(() -> {
+        if (renderingStamp == stamp) {
+          instance.cancelRender();
+        }
+      });
+    }
+  }
+
+  /**
+   * Render again after an included file has changed. Changes arriving within {@link #INCLUDES_CHANGED_DELAY}
+   * are coalesced into one render. If the preview isn't visible, it renders when it is selected next.
+   */
+  private void includesChanged() {
+    includesChanged = true;
+    myIncludesAlarm.cancelAllRequests();
+    myIncludesAlarm.addRequest(this::renderIfVisible, INCLUDES_CHANGED_DELAY);
+  }
+
   public void renderIfVisible() {
     if (getComponent().isVisible()) {
       render();
@@ -175,7 +371,11 @@ public class AsciiDocPreviewEditor extends UserDataHolderBase implements FileEdi
         AsciiDocPreviewSettings.DEFAULT.getHtmlPanelProviderInfo(), settings.getAsciiDocPreviewSettings().getPreviewTheme(),
         settings.getAsciiDocPreviewSettings().getAttributes(), settings.getAsciiDocPreviewSettings().isVerticalSplit(),
         settings.getAsciiDocPreviewSettings().isEditorFirst(), settings.getAsciiDocPreviewSettings().isEnabledInjections(),
-        settings.getAsciiDocPreviewSettings().getDisabledInjectionsByLanguage()));
+        settings.getAsciiDocPreviewSettings().getDisabledInjectionsByLanguage(),
+        settings.getAsciiDocPreviewSettings().isIncrementalPreview(),
+        settings.getAsciiDocPreviewSettings().isPrewarmRuntime(),
+        settings.getAsciiDocPreviewSettings().isConfigAsAttributes(),
+        settings.getAsciiDocPreviewSettings().isRenderInWorker()));
 
       /* the following will not work, IntellIJ will show the error "parent must be showing" when this is
          tiggered during startup. */
@@ -199,28 +399,71 @@ public class AsciiDocPreviewEditor extends UserDataHolderBase implements FileEdi
     this.document = document;
     this.project = project;
 
-    this.tempImagesPath = AsciiDoc.tempImagesPath();
+    VirtualFile file = FileDocumentManager.getInstance().getFile(document);
+    this.fileName = file != null ? file.getName() : "";
+    Path cachePath = file != null ? AsciiDocDiagramCache.getInstance(project).acquire(file) : null;
+    this.cachedImages = cachePath != null;
+    this.imagesPath = cachePath != null ? cachePath : AsciiDoc.tempImagesPath();
 
     myHtmlPanelWrapper = new JPanel(new BorderLayout());
+    // renders of previews that aren't showing wait in the queue until they are shown
+    myHtmlPanelWrapper.addHierarchyListener(e -> {
+      if ((e.getChangeFlags() & HierarchyEvent.SHOWING_CHANGED) != 0) {
+        showing = myHtmlPanelWrapper.isShowing();
+        if (showing) {
+          PreviewRenderQueue.getInstance(project).update();
+        }
+      }
+    });
+    this.renderScheduler = new RenderScheduler(fileName, render -> PreviewRenderQueue.getInstance(project)
+      .submit(this, file, () -> showing, render));
+    Disposer.register(this, renderScheduler);
 
     final AsciiDocApplicationSettings settings = AsciiDocApplicationSettings.getInstance();
 
-    myPanel = detachOldPanelAndCreateAndAttachNewOne(document, tempImagesPath, myHtmlPanelWrapper, null, retrievePanelProvider(settings));
+    myPanel = detachOldPanelAndCreateAndAttachNewOne(document, imagesPath, myHtmlPanelWrapper, null, retrievePanelProvider(settings));
 
     MessageBusConnection settingsConnection = ApplicationManager.getApplication().getMessageBus().connect(this);
     AsciiDocApplicationSettings.SettingsChangedListener settingsChangedListener = new MyUpdatePanelOnSettingsChangedListener();
     settingsConnection.subscribe(AsciiDocApplicationSettings.SettingsChangedListener.TOPIC, settingsChangedListener);
 
-    // Get asciidoc asynchronously
-    new Thread(() -> asciidoc.run()).start();
-
     // Listen to the document modifications.
     this.document.addDocumentListener(new DocumentAdapter() {
       @Override
       public void documentChanged(DocumentEvent e) {
+        cancelStaleRender();
         renderIfVisible();
       }
     }, this);
+
+    // Listen to modifications of included files, both unsaved and on disk.
+    EditorFactory.getInstance().getEventMulticaster().addDocumentListener(new DocumentAdapter() {
+      @Override
+      public void documentChanged(DocumentEvent e) {
+        if (e.getDocument() != document && includes.contains(FileDocumentManager.getInstance().getFile(e.getDocument()))) {
+          includesChanged();
+        }
+      }
+    }, this);
+    project.getMessageBus().connect(this).subscribe(VirtualFileManager.VFS_CHANGES, new BulkFileListener() {
+      @Override
+      public void before(@NotNull List<? extends VFileEvent> events) {
+      }
+
+      @Override
+      public void after(@NotNull List<? extends VFileEvent> events) {
+        Set<VirtualFile> current = includes;
+        if (current.isEmpty()) {
+          return;
+        }
+        for (VFileEvent event : events) {
+          if (event.getFile() != null && current.contains(event.getFile())) {
+            includesChanged();
+            return;
+          }
+        }
+      }
+    });
   }
 
   @Contract("_, null, null -> fail")
@@ -326,7 +569,11 @@ public class AsciiDocPreviewEditor extends UserDataHolderBase implements FileEdi
    */
   public void selectNotify() {
     myHtmlPanelWrapper.repaint();
-    currentContent = ""; // force a refresh of the preview by resetting the current memorized content
+    if (VirtualFileManager.getInstance().getModificationCount() != renderedVfsStamp) {
+      // included files are tracked while the preview is open, but other files like diagram sources might
+      // have changed on disk while it wasn't selected; if nothing changed the preview doesn't render again
+      includesChanged = true;
+    }
     reprocessAnnotations();
     renderIfVisible();
   }
@@ -404,9 +651,12 @@ public class AsciiDocPreviewEditor extends UserDataHolderBase implements FileEdi
    */
   public void dispose() {
     Disposer.dispose(this);
-    if (tempImagesPath != null) {
+    PreviewRenderQueue.getInstance(project).remove(this);
+    if (cachedImages) {
+      AsciiDocDiagramCache.getInstance(project).release(imagesPath);
+    } else if (imagesPath != null) {
       try {
-        FileUtils.deleteDirectory(tempImagesPath.toFile());
+        FileUtils.deleteDirectory(imagesPath.toFile());
       } catch (IOException _ex) {
         Logger.getInstance(AsciiDocPreviewEditor.class).warn("could not remove temp folder", _ex);
       }
@@ -426,7 +676,7 @@ public class AsciiDocPreviewEditor extends UserDataHolderBase implements FileEdi
       mySwingAlarm.addRequest(new Runnable() {
         @Override
         public void run() {
-          myPanel = detachOldPanelAndCreateAndAttachNewOne(document, tempImagesPath, myHtmlPanelWrapper, myPanel, newPanelProvider);
+          myPanel = detachOldPanelAndCreateAndAttachNewOne(document, imagesPath, myHtmlPanelWrapper, myPanel, newPanelProvider);
           currentContent = ""; // force a refresh of the preview by resetting the current memorized content
           reprocessAnnotations();
           renderIfVisible();
@@ -0,0 +1,185 @@
+package org.asciidoc.intellij.editor;
+
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.fileEditor.FileEditorManager;
+import com.intellij.openapi.fileEditor.FileEditorManagerAdapter;
+import com.intellij.openapi.fileEditor.FileEditorManagerEvent;
+import com.intellij.openapi.fileEditor.FileEditorManagerListener;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.asciidoc.intellij.AsciiDoc;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Runs the renders of all previews of a project on a bounded number of workers, so that opening many previews or
+ * changing the settings doesn't start all renders at once. The preview of the file selected in the active editor
+ * window renders first, then other visible previews in the order they have been requested. Renders of previews that
+ * aren't visible wait until they are shown. A preview has at most one waiting render, requesting another one
+ * while it waits keeps its place in the queue.
+ */
+public class PreviewRenderQueue {
+
+  private static final Logger LOG = Logger.getInstance(PreviewRenderQueue.class);
+
+  private final int workers;
+
+  private final Executor executor;
+
+  /**
+   * Waiting renders by their preview, in the order they have been requested.
+   */
+  private final Map<Object, Request> requests = new LinkedHashMap<>();
+
+  private int running;
+
+  @Nullable
+  private volatile VirtualFile focusedFile;
+
+  public PreviewRenderQueue(Project project) {
+    this(Integer.getInteger("asciidoc.preview.workers", Math.min(2, AsciiDoc.getPoolSize())));
+    VirtualFile[] selected = FileEditorManager.getInstance(project).getSelectedFiles();
+    focusedFile = selected.length > 0 ? selected[0] : null;
+    project.getMessageBus().connect(project).subscribe(FileEditorManagerListener.FILE_EDITOR_MANAGER,
+      new FileEditorManagerAdapter() {
+        @Override
+        public void selectionChanged(@NotNull FileEditorManagerEvent event) {
+          focusedFile = event.getNewFile();
+          update();
+        }
+      });
+  }
+
+  private PreviewRenderQueue(int workers) {
+    this(workers, AppExecutorUtil.createBoundedApplicationPoolExecutor("AsciiDoc preview", Math.max(workers, 1)));
+  }
+
+  PreviewRenderQueue(int workers, @NotNull Executor executor) {
+    this.workers = Math.max(workers, 1);
+    this.executor = executor;
+  }
+
+  public static PreviewRenderQueue getInstance(@NotNull Project project) {
+    return ServiceManager.getService(project, PreviewRenderQueue.class);
+  }
+
+  /**
+   * Queue a render of a preview. If the preview has a render waiting already, it is replaced.
+   *
+   * @param preview identifies the preview
+   * @param file    the file shown in the preview, used to give the focused preview a higher priority
+   * @param visible tells whether the preview is visible, is called on any thread while holding the queue's lock
+   *                whenever a worker becomes available, so it shouldn't do more than read a flag
+   * @param render  the render to run
+   */
+  public void submit(@NotNull Object preview, @Nullable VirtualFile file, @NotNull BooleanSupplier visible,
+                     @NotNull Runnable render) {
+    synchronized (this) {
+      Request request = requests.get(preview);
+      if (request != null) {
+        request.render = render;
+      } else {
+        requests.put(preview, new Request(file, visible, render));
+      }
+    }
+    update();
+  }
+
+  /**
+   * Remove the waiting render of a preview, for example when it is closed.
+   */
+  public synchronized void remove(@NotNull Object preview) {
+    requests.remove(preview);
+  }
+
+  /**
+   * Start waiting renders if workers are available. Call this when a preview becomes visible.
+   */
+  public void update() {
+    while (true) {
+      Runnable render;
+      synchronized (this) {
+        if (running >= workers) {
+          return;
+        }
+        render = next();
+        if (render == null) {
+          return;
+        }
+        ++running;
+      }
+      executor.execute(() -> {
+        try {
+          render.run();
+        } catch (RuntimeException e) {
+          LOG.error("unable to render preview", e);
+        } finally {
+          synchronized (this) {
+            --running;
+          }
+          update();
+        }
+      });
+    }
+  }
+
+  void setFocusedFile(@Nullable VirtualFile file) {
+    focusedFile = file;
+  }
+
+  /**
+   * Take the waiting render with the highest priority.
+   *
+   * @return the render, or <code>null</code> if no visible preview is waiting
+   */
+  @Nullable
+  private Runnable next() {
+    VirtualFile focused = focusedFile;
+    Map.Entry<Object, Request> candidate = null;
+    for (Map.Entry<Object, Request> entry : requests.entrySet()) {
+      Request request = entry.getValue();
+      if (!request.visible.getAsBoolean()) {
+        continue;
+      }
+      if (focused != null && focused.equals(request.file)) {
+        candidate = entry;
+        break;
+      }
+      if (candidate == null) {
+        candidate = entry;
+      }
+    }
+    if (candidate == null) {
+      return null;
+    }
+    Runnable render = candidate.getValue().render;
+    requests.remove(candidate.getKey());
+    return render;
+  }
+
+  /**
+   * Number of renders waiting, including those of previews that aren't visible.
+   */
+  synchronized int size() {
+    return requests.size();
+  }
+
+  private static final class Request {
+    private final VirtualFile file;
+    private final BooleanSupplier visible;
+    private Runnable render;
+
+    private Request(VirtualFile file, BooleanSupplier visible, Runnable render) {
+      this.file = file;
+      this.visible = visible;
+      this.render = render;
+    }
+  }
+}
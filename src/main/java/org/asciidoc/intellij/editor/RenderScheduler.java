@@ -0,0 +1,246 @@
+package org.asciidoc.intellij.editor;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.asciidoc.intellij.RenderTimings;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.LongSupplier;
+
+/**
+ * Runs the renders of a preview one after another, and only the latest render requested while another one was
+ * waiting or running. Once a render is due, it is passed to a worker, usually the project's
+ * {@link PreviewRenderQueue}. The time to wait for more changes before a render starts adapts to how long recent renders
+ * took: a document that renders quickly is shown right away, while a slow document waits for a pause in typing.
+ * To keep the IDE responsive, renders of a preview use at most the share of a CPU core given by
+ * <code>asciidoc.preview.cpu</code>, the next render waits accordingly after a slow render.
+ * The wait times are recorded in the {@link RenderTimings}.
+ */
+public class RenderScheduler implements Disposable {
+
+  private static final Logger LOG = Logger.getInstance(RenderScheduler.class);
+
+  private static final long MS = 1_000_000;
+
+  /**
+   * Number of recent renders the quiet period is based on.
+   */
+  private static final int SAMPLES = 8;
+
+  private final String fileName;
+  private final ScheduledExecutorService timer;
+  private final Executor worker;
+  private final LongSupplier clock;
+  private final long minDelay;
+  private final long maxDelay;
+  private final double duty;
+
+  /**
+   * Durations of the most recent renders in nanoseconds, as a ring buffer.
+   */
+  private final long[] durations = new long[SAMPLES];
+  private int count;
+
+  private BooleanSupplier next;
+  private ScheduledFuture<?> future;
+  private boolean queued;
+  private boolean running;
+  private boolean disposed;
+
+  /**
+   * Time of the first and the latest request since the last render started.
+   */
+  private long firstRequest;
+  private long lastRequest;
+
+  /**
+   * Time when the render has been passed to the worker, and the waits before that.
+   */
+  private long queuedAt;
+  private long debounce;
+  private long throttle;
+
+  /**
+   * Time when the last render ended and how long it took.
+   */
+  private long lastEnd;
+  private long lastDuration;
+
+  /**
+   * @param worker runs a render once it is due
+   */
+  public RenderScheduler(@NotNull String fileName, @NotNull Executor worker) {
+    this(fileName, AppExecutorUtil.getAppScheduledExecutorService(), worker, System::nanoTime,
+      Integer.getInteger("asciidoc.preview.delay.min", 20) * MS,
+      Integer.getInteger("asciidoc.preview.delay.max", 1000) * MS, defaultDuty());
+  }
+
+  /**
+   * Share of a CPU core the renders of a preview may use, from <code>asciidoc.preview.cpu</code>.
+   */
+  static double defaultDuty() {
+    return Double.parseDouble(System.getProperty("asciidoc.preview.cpu", "0.25"));
+  }
+
+  /**
+   * @param minDelay shortest quiet period before a render in nanoseconds
+   * @param maxDelay longest quiet period before a render in nanoseconds, also while changes keep coming
+   * @param duty     share of the time a render of this preview may use a CPU core, between 0 and 1
+   */
+  RenderScheduler(@NotNull String fileName, @NotNull ScheduledExecutorService timer, @NotNull Executor worker,
+                  @NotNull LongSupplier clock, long minDelay, long maxDelay, double duty) {
+    this.fileName = fileName;
+    this.timer = timer;
+    this.worker = worker;
+    this.clock = clock;
+    this.minDelay = minDelay;
+    this.maxDelay = Math.max(minDelay, maxDelay);
+    this.duty = Math.max(0.01, Math.min(1.0, duty));
+  }
+
+  /**
+   * Schedule a render, replacing a render that hasn't started yet. If a render has been passed to the worker
+   * already, it runs this render instead.
+   *
+   * @param render renders the preview and returns <code>true</code>, or returns <code>false</code> if there was
+   *               nothing to render; only the duration of actual renders adapts the quiet period
+   */
+  public synchronized void execute(@NotNull BooleanSupplier render) {
+    if (disposed) {
+      return;
+    }
+    long now = clock.getAsLong();
+    if (next == null) {
+      firstRequest = now;
+    }
+    lastRequest = now;
+    next = render;
+    if (!running && !queued) {
+      schedule(now);
+    }
+  }
+
+  private void schedule(long now) {
+    if (future != null) {
+      future.cancel(false);
+    }
+    future = timer.schedule(this::due, Math.max(0, nextStart() - now), TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Time the next render starts: after the quiet period has passed without further requests, but no later than
+   * the longest quiet period after the first request, and not before the CPU limit allows it.
+   */
+  synchronized long nextStart() {
+    return Math.max(quietEnd(), throttleEnd());
+  }
+
+  private long quietEnd() {
+    return Math.min(lastRequest + quietPeriod(), firstRequest + maxDelay);
+  }
+
+  /**
+   * The time after the last render that keeps renders within the share of the CPU.
+   */
+  private long throttleEnd() {
+    if (lastDuration == 0) {
+      return Long.MIN_VALUE;
+    }
+    return lastEnd + (long) (lastDuration * (1 - duty) / duty);
+  }
+
+  /**
+   * Time to wait for more changes: the median duration of the recent renders, within the configured bounds.
+   */
+  synchronized long quietPeriod() {
+    if (count == 0) {
+      return minDelay;
+    }
+    long[] sorted = Arrays.copyOf(durations, Math.min(count, SAMPLES));
+    Arrays.sort(sorted);
+    return Math.max(minDelay, Math.min(maxDelay, sorted[sorted.length / 2]));
+  }
+
+  /**
+   * Pass the render to the worker once the waits are over.
+   */
+  private synchronized void due() {
+    if (disposed || next == null) {
+      return;
+    }
+    long now = clock.getAsLong();
+    if (nextStart() > now) {
+      // a request arrived after this run had been scheduled
+      schedule(now);
+      return;
+    }
+    debounce = Math.max(0, quietEnd() - firstRequest);
+    throttle = nextStart() - quietEnd();
+    queuedAt = now;
+    future = null;
+    queued = true;
+    worker.execute(this::run);
+  }
+
+  private void run() {
+    BooleanSupplier render;
+    long start;
+    synchronized (this) {
+      queued = false;
+      if (disposed || next == null) {
+        return;
+      }
+      render = next;
+      next = null;
+      running = true;
+      start = clock.getAsLong();
+    }
+    RenderTimings.getInstance().record(fileName, RenderTimings.Stage.DEBOUNCE, debounce);
+    RenderTimings.getInstance().record(fileName, RenderTimings.Stage.THROTTLE, throttle);
+    RenderTimings.getInstance().record(fileName, RenderTimings.Stage.QUEUE, start - queuedAt);
+    boolean rendered = false;
+    try {
+      rendered = render.getAsBoolean();
+    } catch (RuntimeException e) {
+      LOG.error("unable to render preview of " + fileName, e);
+    } finally {
+      long end = clock.getAsLong();
+      synchronized (this) {
+        running = false;
+        if (rendered) {
+          completed(end - start, end);
+        }
+        if (next != null && !disposed) {
+          schedule(end);
+        }
+      }
+    }
+  }
+
+  /**
+   * Take the duration of a render into account for the following renders.
+   */
+  synchronized void completed(long duration, long end) {
+    durations[count % SAMPLES] = duration;
+    ++count;
+    lastDuration = duration;
+    lastEnd = end;
+  }
+
+  @Override
+  public synchronized void dispose() {
+    disposed = true;
+    next = null;
+    if (future != null) {
+      future.cancel(false);
+      future = null;
+    }
+  }
+}
@@ -0,0 +1,140 @@
+package org.asciidoc.intellij.editor;
+
+import com.intellij.icons.AllIcons;
+import com.intellij.openapi.actionSystem.ActionManager;
+import com.intellij.openapi.actionSystem.ActionPlaces;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.actionSystem.DefaultActionGroup;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.DumbAware;
+import com.intellij.openapi.project.DumbAwareAction;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.SimpleToolWindowPanel;
+import com.intellij.openapi.wm.ToolWindow;
+import com.intellij.openapi.wm.ToolWindowFactory;
+import com.intellij.ui.ScrollPaneFactory;
+import com.intellij.ui.components.JBLabel;
+import com.intellij.ui.content.Content;
+import com.intellij.ui.content.ContentFactory;
+import com.intellij.ui.table.JBTable;
+import com.intellij.util.Alarm;
+import com.intellij.util.ui.ColumnInfo;
+import com.intellij.util.ui.ListTableModel;
+import org.asciidoc.intellij.AsciiDoc;
+import org.asciidoc.intellij.RenderTimings;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.Locale;
+
+/**
+ * Tool window showing how long each stage of rendering took for the recently rendered files,
+ * see {@link RenderTimings}, and how often renders have been served from the {@link org.asciidoc.intellij.RenderCache}.
+ */
+public class RenderTimingsToolWindowFactory implements ToolWindowFactory, DumbAware {
+
+  private static final Logger LOG = Logger.getInstance(RenderTimingsToolWindowFactory.class);
+
+  private static final ColumnInfo[] COLUMNS = new ColumnInfo[]{
+    new ColumnInfo<RenderTimings.Row, String>("File") {
+      @Nullable
+      @Override
+      public String valueOf(RenderTimings.Row row) {
+        return row.getFile();
+      }
+    },
+    new ColumnInfo<RenderTimings.Row, String>("Stage") {
+      @Nullable
+      @Override
+      public String valueOf(RenderTimings.Row row) {
+        return row.getStage().toString();
+      }
+    },
+    new ColumnInfo<RenderTimings.Row, String>("Count") {
+      @Nullable
+      @Override
+      public String valueOf(RenderTimings.Row row) {
+        return Long.toString(row.getCount());
+      }
+    },
+    new ColumnInfo<RenderTimings.Row, String>("p50 ms") {
+      @Nullable
+      @Override
+      public String valueOf(RenderTimings.Row row) {
+        return millis(row.getP50());
+      }
+    },
+    new ColumnInfo<RenderTimings.Row, String>("p95 ms") {
+      @Nullable
+      @Override
+      public String valueOf(RenderTimings.Row row) {
+        return millis(row.getP95());
+      }
+    },
+    new ColumnInfo<RenderTimings.Row, String>("max ms") {
+      @Nullable
+      @Override
+      public String valueOf(RenderTimings.Row row) {
+        return millis(row.getMax());
+      }
+    }
+  };
+
+  @Override
+  public void createToolWindowContent(@NotNull Project project, @NotNull ToolWindow toolWindow) {
+    RenderTimings timings = RenderTimings.getInstance();
+    @SuppressWarnings("unchecked")
+    ListTableModel<RenderTimings.Row> model = new ListTableModel<>(COLUMNS, timings.snapshot());
+    JBTable table = new JBTable(model);
+    JBLabel cache = new JBLabel(AsciiDoc.getRenderCache().getSummary());
+    JPanel tableWithCache = new JPanel(new BorderLayout());
+    tableWithCache.add(ScrollPaneFactory.createScrollPane(table), BorderLayout.CENTER);
+    tableWithCache.add(cache, BorderLayout.SOUTH);
+    SimpleToolWindowPanel panel = new SimpleToolWindowPanel(false, true);
+    panel.setContent(tableWithCache);
+
+    Content content = ContentFactory.SERVICE.getInstance().createContent(panel, "", false);
+    toolWindow.getContentManager().addContent(content);
+
+    // timings are recorded for every render, update the table at most twice a second
+    Alarm alarm = new Alarm(Alarm.ThreadToUse.SWING_THREAD, content);
+    Runnable refresh = () -> {
+      model.setItems(timings.snapshot());
+      cache.setText(AsciiDoc.getRenderCache().getSummary());
+    };
+    timings.addListener(() -> {
+      if (alarm.isEmpty()) {
+        alarm.addRequest(refresh, 500);
+      }
+    }, content);
+
+    DefaultActionGroup group = new DefaultActionGroup();
+    group.add(new DumbAwareAction("Refresh", "Show the latest timings", AllIcons.Actions.Refresh) {
+      @Override
+      public void actionPerformed(AnActionEvent e) {
+        refresh.run();
+      }
+    });
+    group.add(new DumbAwareAction("Dump to Log", "Write the timings to the IDE's log file", AllIcons.Actions.Dump) {
+      @Override
+      public void actionPerformed(AnActionEvent e) {
+        timings.dump();
+        LOG.info(AsciiDoc.getRenderCache().getSummary());
+      }
+    });
+    group.add(new DumbAwareAction("Clear", "Remove all timings", AllIcons.Actions.GC) {
+      @Override
+      public void actionPerformed(AnActionEvent e) {
+        timings.clear();
+        refresh.run();
+      }
+    });
+    panel.setToolbar(ActionManager.getInstance().createActionToolbar(ActionPlaces.UNKNOWN, group, false).getComponent());
+  }
+
+  private static String millis(double value) {
+    return String.format(Locale.ROOT, "%.1f", value);
+  }
+}
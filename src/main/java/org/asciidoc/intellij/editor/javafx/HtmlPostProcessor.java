@@ -0,0 +1,179 @@
+package org.asciidoc.intellij.editor.javafx;
+
+import org.asciidoc.intellij.Md5;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Rewrites the HTML of a rendered document for the JavaFX preview in a single pass: image URLs are rewritten,
+ * Twitter's script is removed, inline colors of code are removed for the dark theme, and the CSS and JavaScript of
+ * the preview are added. Patterns are only tried at the start of a tag, therefore the time is linear in the length
+ * of the HTML. Each image is hashed once per pass, even if it is shown several times.
+ */
+final class HtmlPostProcessor {
+
+  private static final Pattern IMG_SRC = Pattern.compile("<img src=\"([^:\"]*)\"");
+
+  /**
+   * Twitter's JavaScript is problematic for JDK8 JavaFX.
+   * See: https://github.com/asciidoctor/asciidoctor-intellij-plugin/issues/235
+   */
+  private static final Pattern TWITTER_SCRIPT = Pattern.compile(
+    "<script [a-z ]*src=\"https://platform\\.twitter\\.com/widgets\\.js\" [^>]*></script>", Pattern.CASE_INSENSITIVE);
+
+  private static final String SPAN_STYLE = "<span style=\"";
+
+  /**
+   * Coderay inline CSS colors are barely readable in the dark theme.
+   */
+  private static final Pattern COLOR = Pattern.compile("(?:background-)?color:#[a-zA-Z0-9]*;?");
+
+  private static final String HEAD = "<head>";
+
+  private static final String BODY_END = "</body>";
+
+  private final Path imagesPath;
+  private final String base;
+  private final boolean darcula;
+  private final boolean localFiles;
+
+  /**
+   * Rewritten URLs by the source of the image.
+   */
+  private final Map<String, String> images = new HashMap<>();
+
+  /**
+   * @param imagesPath folder of the images generated for the preview, they are preferred over images in the base
+   * @param base       folder of the document, URL encoded
+   * @param darcula    remove inline colors of code
+   * @param localFiles serve images with the <code>localfile</code> protocol, so that changed images are loaded again
+   */
+  HtmlPostProcessor(Path imagesPath, String base, boolean darcula, boolean localFiles) {
+    this.imagesPath = imagesPath;
+    this.base = base;
+    this.darcula = darcula;
+    this.localFiles = localFiles;
+  }
+
+  /**
+   * Rewrite the HTML.
+   *
+   * @param headLines      added after the first <code>&lt;head&gt;</code>, or <code>null</code> for none
+   * @param scriptingLines added before the first <code>&lt;/body&gt;</code>, or <code>null</code> for none
+   */
+  @NotNull
+  String process(@NotNull String html, @Nullable String headLines, @Nullable String scriptingLines) {
+    int length = html.length();
+    StringBuilder sb = new StringBuilder(length + (headLines != null ? headLines.length() : 0)
+      + (scriptingLines != null ? scriptingLines.length() : 0)
+      // rewritten image URLs are longer than the original ones
+      + length / 16);
+    Matcher img = IMG_SRC.matcher(html);
+    Matcher twitter = TWITTER_SCRIPT.matcher(html);
+    Matcher color = COLOR.matcher(html);
+    boolean headPending = headLines != null;
+    boolean bodyPending = scriptingLines != null;
+    int copied = 0;
+    int start = html.indexOf('<');
+    while (start != -1) {
+      int next = start + 1;
+      char c = next < length ? html.charAt(next) : 0;
+      if (c == 'i' && lookingAt(img, start)) {
+        sb.append(html, copied, start).append("<img src=\"").append(imageUrl(img.group(1))).append('"');
+        copied = img.end();
+        next = copied;
+      } else if (darcula && c == 's' && html.startsWith(SPAN_STYLE, start)) {
+        int styleStart = start + SPAN_STYLE.length();
+        int styleEnd = styleStart;
+        while (lookingAt(color, styleEnd)) {
+          styleEnd = color.end();
+        }
+        if (styleEnd > styleStart) {
+          sb.append(html, copied, styleStart);
+          copied = styleEnd;
+        }
+        next = styleEnd;
+      } else if ((c == 's' || c == 'S') && lookingAt(twitter, start)) {
+        sb.append(html, copied, start);
+        copied = twitter.end();
+        next = copied;
+      } else if (headPending && html.startsWith(HEAD, start)) {
+        next = start + HEAD.length();
+        sb.append(html, copied, next).append(headLines);
+        copied = next;
+        headPending = false;
+      } else if (bodyPending && html.startsWith(BODY_END, start)) {
+        sb.append(html, copied, start).append(scriptingLines);
+        copied = start;
+        next = start + BODY_END.length();
+        bodyPending = false;
+      }
+      start = html.indexOf('<', next);
+    }
+    sb.append(html, copied, length);
+    return sb.toString();
+  }
+
+  private static boolean lookingAt(Matcher matcher, int start) {
+    // the end of the region is the end of the HTML, it never changes
+    matcher.region(start, matcher.regionEnd());
+    return matcher.lookingAt();
+  }
+
+  /**
+   * For each image we'll calculate a MD5 sum of its content. Once the content changes, MD5 and therefore the URL
+   * will change. The changed URL is necessary for the JavaFX web view to display the new content, as each URL
+   * will be loaded only once by the JavaFX web view.
+   */
+  private String imageUrl(String file) {
+    return images.computeIfAbsent(file, this::rewrite);
+  }
+
+  private String rewrite(String file) {
+    Path tmpFile = imagesPath.resolve(file);
+    if (Files.exists(tmpFile)) {
+      String path = tmpFile.toFile().toString();
+      String md5 = calculateMd5(path, null);
+      path = path.replace('\\', '/');
+      if (localFiles) {
+        return "localfile://" + md5 + "/" + path.replace(":", "%3A");
+      } else {
+        return "file://" + path;
+      }
+    } else {
+      if (localFiles) {
+        return "localfile://" + calculateMd5(file, base) + "/" + base + "/" + file;
+      } else {
+        return "file://" + base.replace("%3A", ":") + "/" + file;
+      }
+    }
+  }
+
+  private static String calculateMd5(String file, String base) {
+    String md5;
+    try {
+      MessageDigest md = Md5.create();
+      try (FileInputStream fis = new FileInputStream((base != null ? base.replaceAll("%3A", ":") + "/" : "") + file)) {
+        int nread;
+        byte[] dataBytes = new byte[1024];
+        while ((nread = fis.read(dataBytes)) != -1) {
+          md.update(dataBytes, 0, nread);
+        }
+      }
+      md5 = Md5.hex(md.digest());
+    } catch (IOException e) {
+      md5 = "none";
+    }
+    return md5;
+  }
+}
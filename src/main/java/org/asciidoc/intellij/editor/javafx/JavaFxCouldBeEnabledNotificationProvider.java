@@ -60,7 +60,11 @@ public class JavaFxCouldBeEnabledNotificationProvider extends EditorNotification
             oldPreviewSettings.isVerticalSplit(),
             oldPreviewSettings.isEditorFirst(),
             oldPreviewSettings.isEnabledInjections(),
-            oldPreviewSettings.getDisabledInjectionsByLanguage()));
+            oldPreviewSettings.getDisabledInjectionsByLanguage(),
+            oldPreviewSettings.isIncrementalPreview(),
+            oldPreviewSettings.isPrewarmRuntime(),
+            oldPreviewSettings.isConfigAsAttributes(),
+            oldPreviewSettings.isRenderInWorker()));
           EditorNotifications.updateAll();
         } else {
           Logger.getInstance(JavaFxCouldBeEnabledNotificationProvider.class).warn("Could not install and apply OpenJFX");
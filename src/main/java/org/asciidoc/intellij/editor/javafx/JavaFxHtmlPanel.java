@@ -19,6 +19,7 @@ import com.intellij.openapi.fileChooser.FileChooserFactory;
 import com.intellij.openapi.fileChooser.FileSaverDescriptor;
 import com.intellij.openapi.fileChooser.FileSaverDialog;
 import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.project.ProjectUtil;
 import com.intellij.openapi.util.NotNullLazyValue;
@@ -42,8 +43,11 @@ import javafx.scene.input.ScrollEvent;
 import javafx.scene.text.FontSmoothingType;
 import javafx.scene.web.WebEngine;
 import javafx.scene.web.WebView;
+import netscape.javascript.JSException;
 import netscape.javascript.JSObject;
 import org.apache.commons.io.IOUtils;
+import org.asciidoc.intellij.AsciiDoc;
+import org.asciidoc.intellij.RenderTimings;
 import org.asciidoc.intellij.editor.AsciiDocHtmlPanel;
 import org.asciidoc.intellij.editor.AsciiDocPreviewEditor;
 import org.asciidoc.intellij.psi.AsciiDocBlockId;
@@ -56,27 +60,27 @@ import org.w3c.dom.html.HTMLImageElement;
 import javax.swing.*;
 import java.awt.*;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Properties;
-import java.util.regex.MatchResult;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 public class JavaFxHtmlPanel extends AsciiDocHtmlPanel {
 
   private Logger log = Logger.getInstance(JavaFxHtmlPanel.class);
 
+  /**
+   * Update the content of a loaded page in place instead of loading a new page for each change.
+   */
+  private static final boolean PATCH_CONTENT = Boolean.parseBoolean(System.getProperty("asciidoc.preview.patch", "true"));
+
   private static final NotNullLazyValue<String> MY_SCRIPTING_LINES = new NotNullLazyValue<String>() {
     @NotNull
     @Override
@@ -87,6 +91,7 @@ public class JavaFxHtmlPanel extends AsciiDocHtmlPanel {
         .append("<script src=\"").append(PreviewStaticServer.getScriptUrl("scrollToElement.js")).append("\"></script>\n")
         .append("<script src=\"").append(PreviewStaticServer.getScriptUrl("processLinks.js")).append("\"></script>\n")
         .append("<script src=\"").append(PreviewStaticServer.getScriptUrl("pickSourceLine.js")).append("\"></script>\n")
+        .append("<script src=\"").append(PreviewStaticServer.getScriptUrl("patchContent.js")).append("\"></script>\n")
         .append("<script type=\"text/x-mathjax-config\">\n" +
           "MathJax.Hub.Config({\n" +
           "  messageStyle: \"none\",\n" +
@@ -127,6 +132,24 @@ public class JavaFxHtmlPanel extends AsciiDocHtmlPanel {
   private final ScrollPreservingListener myScrollPreservingListener = new ScrollPreservingListener();
   @NotNull
   private final BridgeSettingListener myBridgeSettingListener = new BridgeSettingListener();
+  @NotNull
+  private final LoadTimingListener myLoadTimingListener = new LoadTimingListener();
+
+  /**
+   * Head of the page that has been passed to the WebView, or <code>null</code> if there is none.
+   * This and the following fields are only accessed in the JavaFX thread.
+   */
+  @Nullable
+  private String myPageHead;
+  /**
+   * Content shown in the page.
+   */
+  @Nullable
+  private String myPageContent;
+  /**
+   * The page has been loaded and its scripts don't know its content yet.
+   */
+  private boolean myPageLoaded;
 
   @NotNull
   private String base;
@@ -136,6 +159,11 @@ public class JavaFxHtmlPanel extends AsciiDocHtmlPanel {
 
   private final Path imagesPath;
 
+  /**
+   * Name of the file to record the {@link RenderTimings} for.
+   */
+  private final String fileName;
+
   private VirtualFile parentDirectory;
   private VirtualFile saveImageLastDir = null;
 
@@ -154,6 +182,7 @@ public class JavaFxHtmlPanel extends AsciiDocHtmlPanel {
     if (file != null) {
       parentDirectory = file.getParent();
     }
+    fileName = file != null ? file.getName() : "";
     if (parentDirectory != null) {
       // parent will be null if we use Language Injection and Fragment Editor
       base = parentDirectory.getUrl().replaceAll("^file://", "")
@@ -225,6 +254,7 @@ public class JavaFxHtmlPanel extends AsciiDocHtmlPanel {
           final WebEngine engine = myWebView.getEngine();
           engine.getLoadWorker().stateProperty().addListener(myBridgeSettingListener);
           engine.getLoadWorker().stateProperty().addListener(myScrollPreservingListener);
+          engine.getLoadWorker().stateProperty().addListener(myLoadTimingListener);
 
           final Scene scene = new Scene(myWebView);
 
@@ -282,9 +312,10 @@ public class JavaFxHtmlPanel extends AsciiDocHtmlPanel {
       } else {
         fileNameNoExt = lastDotIndex > 0 ? fileName.substring(0, lastDotIndex) : fileName;
       }
-      // check if also a SVG exists for the provided PNG
-      if (extensions.contains("png") &&
-        new File(file.getParent(), fileNameNoExt + ".svg").exists()) {
+      // check if also a SVG exists for the provided PNG, or can be generated on demand
+      File svgFile = new File(file.getAbsolutePath().replaceAll("\\.png$", ".svg"));
+      File svgSource = new File(file.getAbsolutePath().replaceAll("\\.png$", ".svg.adoc"));
+      if (extensions.contains("png") && (svgFile.exists() || svgSource.exists())) {
         extensions.add("svg");
       }
       final FileSaverDescriptor descriptor = new FileSaverDescriptor("Export Image to", "Choose the destination file",
@@ -307,7 +338,10 @@ public class JavaFxHtmlPanel extends AsciiDocHtmlPanel {
             Path src = imagePath;
             // if the destination ends with .svg, but the source doesn't, patch the source file name as the user chose a different file type
             if (destination.getFile().getAbsolutePath().endsWith(".svg") && !src.endsWith(".svg")) {
-              src = new File(src.toFile().getAbsolutePath().replaceAll("\\.png$", ".svg")).toPath();
+              src = svgFile.toPath();
+              if (!svgFile.exists()) {
+                generateSvg(svgSource);
+              }
             }
             Files.copy(src, destination.getFile().toPath(), StandardCopyOption.REPLACE_EXISTING);
           } catch (IOException ex) {
@@ -323,6 +357,26 @@ public class JavaFxHtmlPanel extends AsciiDocHtmlPanel {
     }
   }
 
+  /**
+   * The preview renders PlantUML diagrams only as PNG. When saving as SVG, render the document that has been
+   * written next to the PNG for this purpose, see <code>plantuml-png-patch.rb</code>.
+   * The cache is bypassed, as a cached result would not generate the SVG.
+   */
+  private void generateSvg(File svgSource) throws IOException {
+    String content = new String(Files.readAllBytes(svgSource.toPath()), StandardCharsets.UTF_8);
+    Project project = parentDirectory != null ? ProjectUtil.guessProjectForContentFile(parentDirectory) : null;
+    File fileBaseDir = parentDirectory != null ? new File(parentDirectory.getPath()) : svgSource.getParentFile();
+    ProgressManager.getInstance().runProcessWithProgressSynchronously(() -> {
+      if (project != null) {
+        new AsciiDoc(project, fileBaseDir, imagesPath, svgSource.getName())
+          .renderUncached(content, ReadAction.compute(() -> AsciiDoc.getExtensions(project)));
+      } else {
+        new AsciiDoc(fileBaseDir.getPath(), fileBaseDir, imagesPath, svgSource.getName())
+          .renderUncached(content, Collections.emptyList());
+      }
+    }, "Generating SVG", false, project);
+  }
+
   private static void runFX(@NotNull Runnable r) {
     IdeEventQueue.unsafeNonblockingExecute(r);
   }
@@ -370,90 +424,79 @@ public class JavaFxHtmlPanel extends AsciiDocHtmlPanel {
 
   @Override
   public void setHtml(@NotNull String html) {
-    if (isDarcula()) {
-      // clear out coderay inline CSS colors as they are barely readable in darcula theme
-      html = html.replaceAll("<span style=\"color:#[a-zA-Z0-9]*;?", "<span style=\"");
-      html = html.replaceAll("<span style=\"background-color:#[a-zA-Z0-9]*;?", "<span style=\"");
-    }
-    html = "<html><head></head><body>" + html + "</body>";
-    final String htmlToRender = prepareHtml(html);
+    long start = System.nanoTime();
+    boolean darcula = isDarcula();
+    // in darcula theme, clear out coderay inline CSS colors as they are barely readable
+    final String content = new HtmlPostProcessor(imagesPath, base, darcula, JavaFxHtmlPanelProvider.isInitialized())
+      .process(html, null, null);
+    final String headLines = getHeadLines(darcula);
+    RenderTimings.getInstance().recordSince(fileName, RenderTimings.Stage.POST_PROCESS, start);
 
-    runInPlatformWhenAvailable(() -> JavaFxHtmlPanel.this.getWebViewGuaranteed().getEngine().loadContent(htmlToRender));
+    runInPlatformWhenAvailable(() -> {
+      long loadStart = System.nanoTime();
+      if (patchContent(content, headLines)) {
+        RenderTimings.getInstance().recordSince(fileName, RenderTimings.Stage.WEBVIEW, loadStart);
+        return;
+      }
+      myLoadTimingListener.loadStart = loadStart;
+      myPageHead = headLines;
+      myPageContent = content;
+      myPageLoaded = false;
+      JavaFxHtmlPanel.this.getWebViewGuaranteed().getEngine().loadContent(
+        "<html><head>" + headLines + "</head><body>" + content + getScriptingLines() + "</body>");
+    });
   }
 
-  private String findTempImageFile(String filename) {
-    Path file = imagesPath.resolve(filename);
-    if (Files.exists(file)) {
-      return file.toFile().toString();
+  /**
+   * Pass new content to the scripts of the loaded page, which replace only the blocks that changed.
+   * Compared to loading the page again, MathJax and the other scripts don't need to process the whole page,
+   * and the scroll position stays as it is. Content with scripts needs a new page, as inserted scripts don't run.
+   *
+   * @return <code>true</code> if the page has been updated, <code>false</code> if it needs to be loaded again
+   */
+  private boolean patchContent(@NotNull String content, @NotNull String headLines) {
+    WebEngine engine = getWebViewGuaranteed().getEngine();
+    if (!PATCH_CONTENT || !headLines.equals(myPageHead) || engine.getLoadWorker().getState() != State.SUCCEEDED
+      || content.contains("<script")) {
+      return false;
     }
-    return null;
-  }
-
-  private String prepareHtml(@NotNull String html) {
-    /* for each image we'll calculate a MD5 sum of its content. Once the content changes, MD5 and therefore the URL
-     * will change. The changed URL is necessary for the JavaFX web view to display the new content, as each URL
-     * will be loaded only once by the JavaFX web view. */
-    Pattern pattern = Pattern.compile("<img src=\"([^:\"]*)\"");
-    final Matcher matcher = pattern.matcher(html);
-    while (matcher.find()) {
-      final MatchResult matchResult = matcher.toMatchResult();
-      String file = matchResult.group(1);
-      String tmpFile = findTempImageFile(file);
-      String md5;
-      String replacement;
-      if (tmpFile != null) {
-        md5 = calculateMd5(tmpFile, null);
-        tmpFile = tmpFile.replaceAll("\\\\", "/");
-        tmpFile = tmpFile.replaceAll(":", "%3A");
-        if (JavaFxHtmlPanelProvider.isInitialized()) {
-          replacement = "<img src=\"localfile://" + md5 + "/" + tmpFile + "\"";
-        } else {
-          replacement = "<img src=\"file://" + tmpFile.replaceAll("%3A", ":") + "\"";
-        }
-      } else {
-        md5 = calculateMd5(file, base);
-        if (JavaFxHtmlPanelProvider.isInitialized()) {
-          replacement = "<img src=\"localfile://" + md5 + "/" + base + "/" + file + "\"";
-        } else {
-          replacement = "<img src=\"file://" + base.replaceAll("%3A", ":") + "/" + file + "\"";
-        }
+    if (content.equals(myPageContent)) {
+      return true;
+    }
+    try {
+      Object tools = ((JSObject) engine.executeScript("window")).getMember("__IntelliJTools");
+      if (!(tools instanceof JSObject)) {
+        return false;
+      }
+      Object result = ((JSObject) tools).call("patchContent", content, myPageLoaded ? myPageContent : null,
+        lineCount, offset);
+      if (!Boolean.TRUE.equals(result)) {
+        return false;
       }
-      html = html.substring(0, matchResult.start()) +
-        replacement + html.substring(matchResult.end());
-      matcher.reset(html);
+    } catch (JSException e) {
+      log.warn("unable to update the content of the preview, loading it again", e);
+      return false;
     }
+    myPageContent = content;
+    myPageLoaded = false;
+    return true;
+  }
 
-    // filter out Twitter's JavaScript, as it is problematic for JDK8 JavaFX
-    // see: https://github.com/asciidoctor/asciidoctor-intellij-plugin/issues/235
-    html = html.replaceAll("(?i)<script [a-z ]*src=\"https://platform\\.twitter\\.com/widgets\\.js\" [^>]*></script>", "");
+  private String prepareHtml(@NotNull String html) {
+    return prepareHtml(html, imagesPath, base, getHeadLines(isDarcula()), getScriptingLines());
+  }
 
-    /* Add CSS line and JavaScript for auto-scolling and clickable links */
-    return html
-      .replace("<head>", "<head>" + getCssLines(isDarcula() ? myInlineCssDarcula : myInlineCss) + myFontAwesomeCssLink + myDejavuCssLink)
-      .replace("</body>", getScriptingLines() + "</body>");
+  private String getHeadLines(boolean darcula) {
+    return getCssLines(darcula ? myInlineCssDarcula : myInlineCss) + myFontAwesomeCssLink + myDejavuCssLink;
   }
 
-  private String calculateMd5(String file, String base) {
-    String md5;
-    try {
-      MessageDigest md = MessageDigest.getInstance("MD5");
-      try (FileInputStream fis = new FileInputStream((base != null ? base.replaceAll("%3A", ":") + "/" : "") + file)) {
-        int nread;
-        byte[] dataBytes = new byte[1024];
-        while ((nread = fis.read(dataBytes)) != -1) {
-          md.update(dataBytes, 0, nread);
-        }
-      }
-      byte[] mdbytes = md.digest();
-      StringBuilder sb = new StringBuilder();
-      for (byte mdbyte : mdbytes) {
-        sb.append(Integer.toString((mdbyte & 0xff) + 0x100, 16).substring(1));
-      }
-      md5 = sb.toString();
-    } catch (NoSuchAlgorithmException | IOException e) {
-      md5 = "none";
-    }
-    return md5;
+  /**
+   * Rewrite the image URLs of the HTML and add the CSS and JavaScript needed by the preview.
+   * Static to allow benchmarking it without a JavaFX panel.
+   */
+  static String prepareHtml(@NotNull String html, Path imagesPath, String base, String headLines, String scriptingLines) {
+    return new HtmlPostProcessor(imagesPath, base, false, JavaFxHtmlPanelProvider.isInitialized())
+      .process(html, headLines, scriptingLines);
   }
 
   @Override
@@ -484,9 +527,11 @@ public class JavaFxHtmlPanel extends AsciiDocHtmlPanel {
   @Override
   public void dispose() {
     runInPlatformWhenAvailable(() -> {
+      myPageHead = null;
       JavaFxHtmlPanel.this.getWebViewGuaranteed().getEngine().load("about:blank");
       JavaFxHtmlPanel.this.getWebViewGuaranteed().getEngine().getLoadWorker().stateProperty().removeListener(myScrollPreservingListener);
       JavaFxHtmlPanel.this.getWebViewGuaranteed().getEngine().getLoadWorker().stateProperty().removeListener(myBridgeSettingListener);
+      JavaFxHtmlPanel.this.getWebViewGuaranteed().getEngine().getLoadWorker().stateProperty().removeListener(myLoadTimingListener);
     });
   }
 
@@ -607,6 +652,7 @@ public class JavaFxHtmlPanel extends AsciiDocHtmlPanel {
         JSObject win
           = (JSObject) getWebViewGuaranteed().getEngine().executeScript("window");
         win.setMember("JavaPanelBridge", bridge);
+        myPageLoaded = true;
         JavaFxHtmlPanel.this.getWebViewGuaranteed().getEngine().executeScript(
           "if ('__IntelliJTools' in window) {" +
             "__IntelliJTools.processLinks && __IntelliJTools.processLinks();" +
@@ -618,6 +664,27 @@ public class JavaFxHtmlPanel extends AsciiDocHtmlPanel {
     }
   }
 
+  /**
+   * Records the time from passing the content to the WebView until it has been loaded. Passing new content
+   * cancels the previous load, the start of the latest content is kept.
+   */
+  private class LoadTimingListener implements ChangeListener<State> {
+    private long loadStart;
+
+    @Override
+    public void changed(ObservableValue<? extends State> observable, State oldValue, State newValue) {
+      if (loadStart == 0) {
+        return;
+      }
+      if (newValue == State.SUCCEEDED) {
+        RenderTimings.getInstance().recordSince(fileName, RenderTimings.Stage.WEBVIEW, loadStart);
+        loadStart = 0;
+      } else if (newValue == State.FAILED) {
+        loadStart = 0;
+      }
+    }
+  }
+
   private class ScrollPreservingListener implements ChangeListener<State> {
     private volatile int myScrollY = 0;
 
@@ -0,0 +1,240 @@
+package org.asciidoc.intellij.indexer;
+
+import com.intellij.lang.ASTNode;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiRecursiveElementWalkingVisitor;
+import com.intellij.util.indexing.DataIndexer;
+import com.intellij.util.indexing.DefaultFileTypeSpecificInputFilter;
+import com.intellij.util.indexing.FileBasedIndex;
+import com.intellij.util.indexing.FileBasedIndexExtension;
+import com.intellij.util.indexing.FileContent;
+import com.intellij.util.indexing.ID;
+import com.intellij.util.io.DataExternalizer;
+import com.intellij.util.io.EnumeratorStringDescriptor;
+import com.intellij.util.io.IOUtil;
+import com.intellij.util.io.KeyDescriptor;
+import org.asciidoc.intellij.file.AsciiDocFileType;
+import org.asciidoc.intellij.lexer.AsciiDocTokenTypes;
+import org.asciidoc.intellij.psi.AsciiDocAttributeDeclaration;
+import org.asciidoc.intellij.psi.AsciiDocBlockMacro;
+import org.asciidoc.intellij.psi.AsciiDocLink;
+import org.asciidoc.intellij.psi.AsciiDocRef;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Index of the files an AsciiDoc file includes or refers to with a cross reference.
+ * For each file there is an entry with the key {@link #ALL} listing all its targets, and an entry for the file name
+ * of each target, so that the files including a given file can be found by its name.
+ * Attribute references in targets are resolved with the attributes declared earlier in the same file, targets
+ * with other attribute references are kept as they are. Use {@link org.asciidoc.intellij.AsciiDocIncludeService}
+ * to resolve the targets to files.
+ */
+public class AsciiDocIncludeIndex extends FileBasedIndexExtension<String, List<AsciiDocIncludeIndex.Target>> {
+
+  public static final ID<String, List<Target>> NAME = ID.create("asciidoc.include");
+
+  /**
+   * Key of the entry with all targets of a file.
+   */
+  public static final String ALL = "";
+
+  /**
+   * The lexer has no tokens for the inline <code>xref:</code> macro, therefore these are found in the text.
+   */
+  private static final Pattern XREF = Pattern.compile("(?<![\\w\\\\])xref:([^\\[\\s#]+)(#[^\\[\\s]*)?\\[");
+
+  private static final Pattern ATTRIBUTE_REFERENCE = Pattern.compile("\\{([\\w-]+)}");
+
+  @NotNull
+  @Override
+  public ID<String, List<Target>> getName() {
+    return NAME;
+  }
+
+  @NotNull
+  @Override
+  public DataIndexer<String, List<Target>, FileContent> getIndexer() {
+    return inputData -> {
+      List<Target> targets = new ArrayList<>();
+      Map<String, String> attributes = new HashMap<>();
+      inputData.getPsiFile().accept(new PsiRecursiveElementWalkingVisitor() {
+        @Override
+        public void visitElement(PsiElement element) {
+          if (element instanceof AsciiDocAttributeDeclaration) {
+            AsciiDocAttributeDeclaration declaration = (AsciiDocAttributeDeclaration) element;
+            if (declaration.getAttributeName() != null && declaration.getAttributeValue() != null) {
+              attributes.put(declaration.getAttributeName(), declaration.getAttributeValue());
+            }
+          } else if (element instanceof AsciiDocBlockMacro) {
+            ASTNode body = element.getNode().findChildByType(AsciiDocTokenTypes.BLOCK_MACRO_BODY);
+            if (body != null && "include".equals(((AsciiDocBlockMacro) element).getMacroName())) {
+              targets.add(new Target(Kind.INCLUDE, resolve(body.getText(), attributes)));
+            }
+          } else if (element instanceof AsciiDocRef) {
+            ASTNode file = element.getNode().findChildByType(AsciiDocTokenTypes.REFFILE);
+            if (file != null) {
+              targets.add(new Target(Kind.XREF, resolve(file.getText(), attributes)));
+            }
+            return;
+          } else if (element instanceof AsciiDocLink) {
+            ASTNode file = element.getNode().findChildByType(AsciiDocTokenTypes.LINKFILE);
+            if (file != null && AsciiDocFileType.hasAsciiDocExtension(file.getText())) {
+              targets.add(new Target(Kind.XREF, resolve(file.getText(), attributes)));
+            }
+            return;
+          }
+          super.visitElement(element);
+        }
+      });
+      Matcher matcher = XREF.matcher(inputData.getContentAsText());
+      while (matcher.find()) {
+        targets.add(new Target(Kind.XREF, resolve(matcher.group(1), attributes)));
+      }
+
+      Map<String, List<Target>> result = new HashMap<>();
+      if (!targets.isEmpty()) {
+        result.put(ALL, targets);
+      }
+      for (Target target : targets) {
+        String name = target.getFileName();
+        if (name != null) {
+          result.computeIfAbsent(name, key -> new ArrayList<>()).add(target);
+        }
+      }
+      return result;
+    };
+  }
+
+  private static String resolve(String target, Map<String, String> attributes) {
+    Matcher matcher = ATTRIBUTE_REFERENCE.matcher(target);
+    StringBuffer sb = new StringBuffer();
+    while (matcher.find()) {
+      String value = attributes.get(matcher.group(1));
+      matcher.appendReplacement(sb, Matcher.quoteReplacement(value != null ? value : matcher.group()));
+    }
+    matcher.appendTail(sb);
+    return sb.toString().trim();
+  }
+
+  @NotNull
+  @Override
+  public KeyDescriptor<String> getKeyDescriptor() {
+    return EnumeratorStringDescriptor.INSTANCE;
+  }
+
+  @NotNull
+  @Override
+  public DataExternalizer<List<Target>> getValueExternalizer() {
+    return new DataExternalizer<List<Target>>() {
+      @Override
+      public void save(@NotNull DataOutput out, List<Target> value) throws IOException {
+        out.writeInt(value.size());
+        for (Target target : value) {
+          out.writeByte(target.kind.ordinal());
+          IOUtil.writeUTF(out, target.path);
+        }
+      }
+
+      @Override
+      public List<Target> read(@NotNull DataInput in) throws IOException {
+        int size = in.readInt();
+        List<Target> targets = new ArrayList<>(size);
+        for (int i = 0; i < size; ++i) {
+          targets.add(new Target(Kind.values()[in.readByte()], IOUtil.readUTF(in)));
+        }
+        return targets;
+      }
+    };
+  }
+
+  @NotNull
+  @Override
+  public FileBasedIndex.InputFilter getInputFilter() {
+    return new DefaultFileTypeSpecificInputFilter(AsciiDocFileType.INSTANCE);
+  }
+
+  @Override
+  public boolean dependsOnFileContent() {
+    return true;
+  }
+
+  @Override
+  public int getVersion() {
+    return 1;
+  }
+
+  /**
+   * How a file refers to a target.
+   */
+  public enum Kind {
+    INCLUDE,
+    XREF
+  }
+
+  /**
+   * A file an AsciiDoc file refers to, with its path as written in the file.
+   */
+  public static final class Target {
+    private final Kind kind;
+    private final String path;
+
+    public Target(@NotNull Kind kind, @NotNull String path) {
+      this.kind = kind;
+      this.path = path;
+    }
+
+    @NotNull
+    public Kind getKind() {
+      return kind;
+    }
+
+    @NotNull
+    public String getPath() {
+      return path;
+    }
+
+    /**
+     * The last segment of the path, or <code>null</code> if it contains unresolved attributes.
+     */
+    public String getFileName() {
+      String name = path.substring(path.lastIndexOf('/') + 1);
+      if (name.isEmpty() || name.contains("{")) {
+        return null;
+      }
+      return name;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      Target target = (Target) o;
+      return kind == target.kind && path.equals(target.path);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(kind, path);
+    }
+
+    @Override
+    public String toString() {
+      return kind + ":" + path;
+    }
+  }
+}
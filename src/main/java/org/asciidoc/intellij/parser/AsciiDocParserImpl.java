@@ -311,7 +311,7 @@ public class AsciiDocParserImpl {
     myBuilder.advanceLexer();
   }
 
-  private static int headingLevel(@Nullable String headingText) {
+  public static int headingLevel(@Nullable String headingText) {
     if (headingText == null) {
       return 0;
     }
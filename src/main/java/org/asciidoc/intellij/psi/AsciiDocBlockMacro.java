@@ -24,15 +24,20 @@ import java.util.Set;
 public class AsciiDocBlockMacro extends AsciiDocStandardBlock {
   private static final Set<String> HAS_FILE_AS_BODY = new HashSet<>();
 
+  private static final Set<String> DIAGRAMS = new HashSet<>();
+
   static {
-    HAS_FILE_AS_BODY.addAll(Arrays.asList(
-      // standard asciidoctor
-      "image", "include", "video", "audio",
+    DIAGRAMS.addAll(Arrays.asList(
       // asciidoctor diagram
       "a2s", "actdiag", "blockdiag", "ditaa", "erd", "graphviz", "meme", "mermaid", "msc",
       "nwdiag", "packetdiag", "plantuml", "rackdiag", "seqdiag", "shaape", "svgbob",
       "syntrax", "umlet", "vega", "vegalite", "wavedrom"
     ));
+    HAS_FILE_AS_BODY.addAll(Arrays.asList(
+      // standard asciidoctor
+      "image", "include", "video", "audio"
+    ));
+    HAS_FILE_AS_BODY.addAll(DIAGRAMS);
   }
 
   public AsciiDocBlockMacro(@NotNull ASTNode node) {
@@ -79,6 +84,20 @@ public class AsciiDocBlockMacro extends AsciiDocStandardBlock {
 
   }
 
+  /**
+   * Check if this macro creates a diagram with asciidoctor-diagram.
+   */
+  public boolean isDiagram() {
+    return isDiagram(getMacroName());
+  }
+
+  /**
+   * Check if a block macro with this name creates a diagram with asciidoctor-diagram.
+   */
+  public static boolean isDiagram(String macroName) {
+    return DIAGRAMS.contains(macroName);
+  }
+
   @Override
   public Icon getIcon(int ignored) {
     return AsciiDocIcons.Structure.MACRO;
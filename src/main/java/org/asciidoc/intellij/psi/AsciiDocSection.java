@@ -8,6 +8,7 @@ import com.intellij.psi.PsiElementVisitor;
 import icons.AsciiDocIcons;
 import org.asciidoc.intellij.inspections.AsciiDocVisitor;
 import org.asciidoc.intellij.lexer.AsciiDocTokenTypes;
+import org.asciidoc.intellij.parser.AsciiDocParserImpl;
 import org.jetbrains.annotations.NotNull;
 
 import javax.swing.*;
@@ -28,6 +29,14 @@ public class AsciiDocSection extends ASTWrapperPsiElement implements AsciiDocSel
     return "<untitled>";
   }
 
+  public int getHeadingLevel() {
+    ASTNode heading = getNode().findChildByType(AsciiDocTokenTypes.HEADING);
+    if (heading != null) {
+      return AsciiDocParserImpl.headingLevel(heading.getText());
+    }
+    return 0;
+  }
+
   @Override
   public void accept(@NotNull PsiElementVisitor visitor) {
     if (visitor instanceof AsciiDocVisitor) {
@@ -61,6 +61,18 @@ public final class AsciiDocPreviewSettings {
   @Nullable
   private String myDisabledInjectionsByLanguage;
 
+  @Attribute("IncrementalPreview")
+  private boolean myIncrementalPreview = false;
+
+  @Attribute("PrewarmRuntime")
+  private boolean myPrewarmRuntime = false;
+
+  @Attribute("ConfigAsAttributes")
+  private boolean myConfigAsAttributes = false;
+
+  @Attribute("RenderInWorker")
+  private boolean myRenderInWorker = false;
+
   public AsciiDocPreviewSettings() {
   }
 
@@ -69,7 +81,11 @@ public final class AsciiDocPreviewSettings {
                                  @NotNull AsciiDocHtmlPanelProvider.ProviderInfo htmlPanelProviderInfo,
                                  @NotNull AsciiDocHtmlPanel.PreviewTheme previewTheme,
                                  @NotNull Map<String, String> attributes, boolean verticalSplit, boolean editorFirst,
-                                 boolean enableInjections, @Nullable String disabledInjectionsByLanguage) {
+                                 boolean enableInjections, @Nullable String disabledInjectionsByLanguage,
+                                 boolean incrementalPreview,
+                                 boolean prewarmRuntime,
+                                 boolean configAsAttributes,
+                                 boolean renderInWorker) {
     mySplitEditorLayout = splitEditorLayout;
     myHtmlPanelProviderInfo = htmlPanelProviderInfo;
     myPreviewTheme = previewTheme;
@@ -78,6 +94,10 @@ public final class AsciiDocPreviewSettings {
     myIsEditorFirst = editorFirst;
     myEnableInjections = enableInjections;
     myDisabledInjectionsByLanguage = disabledInjectionsByLanguage;
+    myIncrementalPreview = incrementalPreview;
+    myPrewarmRuntime = prewarmRuntime;
+    myConfigAsAttributes = configAsAttributes;
+    myRenderInWorker = renderInWorker;
   }
 
   @NotNull
@@ -122,6 +142,22 @@ public final class AsciiDocPreviewSettings {
     return myDisabledInjectionsByLanguage;
   }
 
+  public boolean isIncrementalPreview() {
+    return myIncrementalPreview;
+  }
+
+  public boolean isPrewarmRuntime() {
+    return myPrewarmRuntime;
+  }
+
+  public boolean isConfigAsAttributes() {
+    return myConfigAsAttributes;
+  }
+
+  public boolean isRenderInWorker() {
+    return myRenderInWorker;
+  }
+
   public List<String> getDisabledInjectionsByLanguageAsList() {
     List<String> list = new ArrayList<>();
     if (myDisabledInjectionsByLanguage != null) {
@@ -164,6 +200,18 @@ public final class AsciiDocPreviewSettings {
     if (!Objects.equals(myDisabledInjectionsByLanguage, that.myDisabledInjectionsByLanguage)) {
       return false;
     }
+    if (myIncrementalPreview != that.myIncrementalPreview) {
+      return false;
+    }
+    if (myPrewarmRuntime != that.myPrewarmRuntime) {
+      return false;
+    }
+    if (myConfigAsAttributes != that.myConfigAsAttributes) {
+      return false;
+    }
+    if (myRenderInWorker != that.myRenderInWorker) {
+      return false;
+    }
     return attributes.equals(that.attributes);
   }
 
@@ -177,6 +225,10 @@ public final class AsciiDocPreviewSettings {
     result = 31 * result + (myIsEditorFirst ? 1 : 0);
     result = 31 * result + (myEnableInjections ? 1 : 0);
     result = 31 * result + Objects.hashCode(myDisabledInjectionsByLanguage);
+    result = 31 * result + (myIncrementalPreview ? 1 : 0);
+    result = 31 * result + (myPrewarmRuntime ? 1 : 0);
+    result = 31 * result + (myConfigAsAttributes ? 1 : 0);
+    result = 31 * result + (myRenderInWorker ? 1 : 0);
     return result;
   }
 
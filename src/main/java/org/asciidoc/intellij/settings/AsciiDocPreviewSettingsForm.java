@@ -42,6 +42,10 @@ public class AsciiDocPreviewSettingsForm implements AsciiDocPreviewSettings.Hold
   private JBCheckBox myEnableInjections;
   private JBTextField myDisabledInjectionsByLanguage;
   private JPanel myDisableLanguageInjection;
+  private JBCheckBox myIncrementalPreview;
+  private JBCheckBox myPrewarmRuntime;
+  private JBCheckBox myConfigAsAttributes;
+  private JBCheckBox myRenderInWorker;
 
   public JComponent getComponent() {
     return myMainPanel;
@@ -137,6 +141,11 @@ public class AsciiDocPreviewSettingsForm implements AsciiDocPreviewSettings.Hold
     myDisableLanguageInjection.setVisible(myEnableInjections.isSelected());
 
     myDisabledInjectionsByLanguage.setText(settings.getDisabledInjectionsByLanguage());
+
+    myIncrementalPreview.setSelected(settings.isIncrementalPreview());
+    myPrewarmRuntime.setSelected(settings.isPrewarmRuntime());
+    myConfigAsAttributes.setSelected(settings.isConfigAsAttributes());
+    myRenderInWorker.setSelected(settings.isRenderInWorker());
   }
 
   @NotNull
@@ -153,6 +162,6 @@ public class AsciiDocPreviewSettingsForm implements AsciiDocPreviewSettings.Hold
     return new AsciiDocPreviewSettings(mySplitLayoutModel.getSelectedItem(),
       myPreviewPanelModel.getSelected(), myPreviewThemeModel.getSelectedItem(), attributes,
       myVerticalLayout.isSelected(), myEditorTop.isSelected() || myEditorLeft.isSelected(), myEnableInjections.isSelected(),
-      myDisabledInjectionsByLanguage.getText());
+      myDisabledInjectionsByLanguage.getText(), myIncrementalPreview.isSelected(), myPrewarmRuntime.isSelected(), myConfigAsAttributes.isSelected(), myRenderInWorker.isSelected());
   }
 }
@@ -0,0 +1,134 @@
+package org.asciidoc.intellij.worker;
+
+import org.asciidoc.intellij.AsciidoctorScripts;
+import org.asciidoctor.Asciidoctor;
+import org.asciidoctor.log.LogHandler;
+import org.asciidoctor.log.LogRecord;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ServiceConfigurationError;
+import java.util.logging.Logger;
+
+/**
+ * Entry point of a separate Java process that renders documents for the IDE, so that the JRuby runtime
+ * doesn't use the IDE's heap. It reads requests from stdin and writes responses to stdout until stdin is
+ * closed, see {@link RenderWorkerProtocol}. Anything Asciidoctor prints is captured and returned with the
+ * response, as it would otherwise corrupt the stream. Stack traces are written to stderr.
+ * This runs outside of the IDE, therefore it must not depend on IntelliJ classes.
+ */
+public final class RenderWorkerMain {
+
+  private final CapturingOutputStream capturedOut = new CapturingOutputStream();
+  private final CapturingOutputStream capturedErr = new CapturingOutputStream();
+  private final PrintStream log;
+
+  private Asciidoctor asciidoctor;
+  private String instanceKey;
+
+  private RenderWorkerMain(PrintStream log) {
+    this.log = log;
+  }
+
+  public static void main(String[] args) throws IOException {
+    DataInputStream in = new DataInputStream(new BufferedInputStream(System.in));
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(FileDescriptor.out)));
+    RenderWorkerMain worker = new RenderWorkerMain(System.err);
+    System.setOut(new PrintStream(worker.capturedOut, true, StandardCharsets.UTF_8.name()));
+    System.setErr(new PrintStream(worker.capturedErr, true, StandardCharsets.UTF_8.name()));
+    RenderWorkerProtocol.Request request;
+    while ((request = RenderWorkerProtocol.readRequest(in)) != null) {
+      RenderWorkerProtocol.writeResponse(out, worker.handle(request));
+    }
+    if (worker.asciidoctor != null) {
+      worker.asciidoctor.shutdown();
+    }
+  }
+
+  private RenderWorkerProtocol.Response handle(RenderWorkerProtocol.Request request) {
+    capturedOut.reset();
+    capturedErr.reset();
+    List<LogRecord> logRecords = new ArrayList<>();
+    String html = null;
+    String error = null;
+    try {
+      Asciidoctor instance = instance(request);
+      LogHandler logHandler = logRecords::add;
+      instance.registerLogHandler(logHandler);
+      try {
+        if (request.getKind() == RenderWorkerProtocol.CONVERT) {
+          html = instance.convert(request.getText(), request.getOptions());
+        } else {
+          instance.load(request.getText(), request.getOptions());
+        }
+      } finally {
+        instance.unregisterLogHandler(logHandler);
+      }
+    } catch (Exception | ServiceConfigurationError e) {
+      e.printStackTrace(log);
+      error = e.toString();
+    }
+    Runtime runtime = Runtime.getRuntime();
+    return new RenderWorkerProtocol.Response(html, capturedOut.drain(), capturedErr.drain(), error,
+      runtime.totalMemory() - runtime.freeMemory(), logRecords);
+  }
+
+  /**
+   * A worker keeps one instance, which is replaced when the extensions change.
+   */
+  private Asciidoctor instance(RenderWorkerProtocol.Request request) {
+    if (asciidoctor != null && !request.getInstanceKey().equals(instanceKey)) {
+      asciidoctor.shutdown();
+      asciidoctor = null;
+    }
+    if (asciidoctor == null) {
+      Asciidoctor instance = Asciidoctor.Factory.create();
+      try {
+        // messages are returned as log records, don't print them via JUL
+        Logger.getLogger("asciidoctor").setUseParentHandlers(false);
+        AsciidoctorScripts.register(instance, request.getExtensions());
+      } catch (RuntimeException | Error e) {
+        instance.shutdown();
+        throw e;
+      }
+      asciidoctor = instance;
+      instanceKey = request.getInstanceKey();
+    }
+    return asciidoctor;
+  }
+
+  private static final class CapturingOutputStream extends OutputStream {
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+    @Override
+    public synchronized void write(int b) {
+      buffer.write(b);
+    }
+
+    @Override
+    public synchronized void write(byte[] b, int off, int len) {
+      buffer.write(b, off, len);
+    }
+
+    private synchronized void reset() {
+      buffer.reset();
+    }
+
+    private synchronized String drain() {
+      String result = new String(buffer.toByteArray(), StandardCharsets.UTF_8);
+      buffer.reset();
+      return result;
+    }
+  }
+}
@@ -0,0 +1,231 @@
+package org.asciidoc.intellij.worker;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.util.lang.UrlClassLoader;
+import org.asciidoctor.Asciidoctor;
+import org.asciidoctor.log.LogRecord;
+import org.jetbrains.annotations.NotNull;
+import org.jruby.Ruby;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pool of {@link RenderWorkerMain} processes. Each worker renders one document at a time; a worker is
+ * replaced after a number of renders or when its heap grows beyond a threshold, so that leaks in extensions
+ * don't accumulate. A crashed worker is replaced on the next render.
+ */
+public class RenderWorkerPool {
+
+  private static final Logger LOG = Logger.getInstance(RenderWorkerPool.class);
+
+  private final int maxWorkers;
+  private final int maxRenders;
+  private final long maxUsedMemory;
+
+  private final Deque<RenderWorker> idle = new ArrayDeque<>();
+
+  private int workers;
+
+  public RenderWorkerPool(int maxWorkers, int maxRenders, long maxUsedMemory) {
+    this.maxWorkers = maxWorkers;
+    this.maxRenders = maxRenders;
+    this.maxUsedMemory = maxUsedMemory;
+  }
+
+  /**
+   * Pool sized by the system properties <code>asciidoc.worker.count</code> (number of processes),
+   * <code>asciidoc.worker.max.renders</code> (renders before a process is replaced) and
+   * <code>asciidoc.worker.max.heap.mb</code> (used heap after which a process is replaced).
+   */
+  public static RenderWorkerPool createDefault() {
+    return new RenderWorkerPool(Integer.getInteger("asciidoc.worker.count", 1),
+      Integer.getInteger("asciidoc.worker.max.renders", 500),
+      Long.getLong("asciidoc.worker.max.heap.mb", 384) * 1024 * 1024);
+  }
+
+  /**
+   * Send the request to a worker and wait for the response. Starts a worker if none is available.
+   *
+   * @throws IOException if the worker could not be started or terminated while rendering
+   */
+  @NotNull
+  public RenderWorkerProtocol.Response render(@NotNull RenderWorkerProtocol.Request request) throws IOException {
+    RenderWorker worker = checkout();
+    boolean reusable = false;
+    try {
+      RenderWorkerProtocol.Response response = worker.render(request);
+      reusable = worker.renders < maxRenders && response.getUsedMemory() < maxUsedMemory;
+      return response;
+    } finally {
+      checkin(worker, reusable);
+    }
+  }
+
+  /**
+   * Stop workers that have not been used since the given timestamp.
+   *
+   * @return the number of workers stopped
+   */
+  public int evictIdleSince(long timestamp) {
+    List<RenderWorker> evicted = new ArrayList<>();
+    synchronized (this) {
+      Iterator<RenderWorker> iterator = idle.iterator();
+      while (iterator.hasNext()) {
+        RenderWorker worker = iterator.next();
+        if (worker.lastUsed < timestamp) {
+          iterator.remove();
+          --workers;
+          evicted.add(worker);
+        }
+      }
+      notifyAll();
+    }
+    evicted.forEach(worker -> ApplicationManager.getApplication().executeOnPooledThread(worker::shutdown));
+    return evicted.size();
+  }
+
+  private RenderWorker checkout() throws IOException {
+    synchronized (this) {
+      while (idle.isEmpty() && workers >= maxWorkers) {
+        try {
+          wait();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new IOException("interrupted while waiting for a worker", e);
+        }
+      }
+      if (!idle.isEmpty()) {
+        return idle.pop();
+      }
+      ++workers;
+    }
+    try {
+      return new RenderWorker();
+    } catch (IOException | RuntimeException e) {
+      synchronized (this) {
+        --workers;
+        notifyAll();
+      }
+      throw e;
+    }
+  }
+
+  private void checkin(RenderWorker worker, boolean reusable) {
+    synchronized (this) {
+      if (reusable) {
+        idle.push(worker);
+      } else {
+        --workers;
+      }
+      notifyAll();
+    }
+    if (!reusable) {
+      // waiting for the process to terminate should not delay the render
+      ApplicationManager.getApplication().executeOnPooledThread(worker::shutdown);
+    }
+  }
+
+  private static List<String> command() {
+    String javaHome = System.getProperty("java.home");
+    String executable = System.getProperty("os.name").toLowerCase().startsWith("windows") ? "java.exe" : "java";
+    List<String> command = new ArrayList<>();
+    command.add(Paths.get(javaHome, "bin", executable).toString());
+    command.add("-Xmx" + Integer.getInteger("asciidoc.worker.xmx.mb", 512) + "m");
+    command.add("-Djava.awt.headless=true");
+    command.add("-Dfile.encoding=UTF-8");
+    command.add("-cp");
+    command.add(String.join(File.pathSeparator, classPath()));
+    command.add(RenderWorkerMain.class.getName());
+    return command;
+  }
+
+  /**
+   * The worker uses the same libraries as the plugin, take them from the plugin's class loader.
+   */
+  private static Set<String> classPath() {
+    Set<String> entries = new LinkedHashSet<>();
+    ClassLoader loader = RenderWorkerPool.class.getClassLoader();
+    if (loader instanceof UrlClassLoader) {
+      for (URL url : ((UrlClassLoader) loader).getUrls()) {
+        try {
+          entries.add(Paths.get(url.toURI()).toString());
+        } catch (URISyntaxException | IllegalArgumentException e) {
+          LOG.warn("unable to add " + url + " to the worker's class path", e);
+        }
+      }
+    }
+    if (entries.isEmpty()) {
+      for (Class<?> clazz : new Class<?>[]{RenderWorkerMain.class, Asciidoctor.class, LogRecord.class, Ruby.class}) {
+        entries.add(PathManager.getJarPathForClass(clazz));
+      }
+    }
+    return entries;
+  }
+
+  private static final class RenderWorker {
+    private final Process process;
+    private final DataOutputStream out;
+    private final DataInputStream in;
+    private int renders;
+    private long lastUsed = System.currentTimeMillis();
+
+    private RenderWorker() throws IOException {
+      ProcessBuilder builder = new ProcessBuilder(command());
+      // stack traces of the worker go to a log file next to the IDE's log
+      builder.redirectError(ProcessBuilder.Redirect.appendTo(new File(PathManager.getLogPath(), "asciidoctor-worker.log")));
+      process = builder.start();
+      out = new DataOutputStream(new BufferedOutputStream(process.getOutputStream()));
+      in = new DataInputStream(new BufferedInputStream(process.getInputStream()));
+    }
+
+    private RenderWorkerProtocol.Response render(RenderWorkerProtocol.Request request) throws IOException {
+      ++renders;
+      lastUsed = System.currentTimeMillis();
+      try {
+        RenderWorkerProtocol.writeRequest(out, request);
+        return RenderWorkerProtocol.readResponse(in);
+      } catch (IOException e) {
+        // the stream is in an unknown state, the worker will not be reused
+        renders = Integer.MAX_VALUE;
+        throw e;
+      }
+    }
+
+    /**
+     * Closing stdin lets the worker terminate, force it if it doesn't terminate in time.
+     */
+    private void shutdown() {
+      try {
+        out.close();
+      } catch (IOException e) {
+        LOG.debug("unable to close worker's input", e);
+      }
+      try {
+        if (!process.waitFor(5, TimeUnit.SECONDS)) {
+          process.destroyForcibly();
+        }
+      } catch (InterruptedException e) {
+        process.destroyForcibly();
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+}
@@ -0,0 +1,386 @@
+package org.asciidoc.intellij.worker;
+
+import org.asciidoctor.ast.Cursor;
+import org.asciidoctor.log.LogRecord;
+import org.asciidoctor.log.Severity;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary framing of the messages exchanged with a {@link RenderWorkerMain} over its standard input and output.
+ * Each message is sent as a frame consisting of its length followed by its payload. Strings are encoded as
+ * UTF-8 prefixed by their length, values of the option map are tagged with their type.
+ * This class is used by both the IDE and the worker process, therefore it must not depend on IntelliJ classes.
+ */
+public final class RenderWorkerProtocol {
+
+  /**
+   * Convert the document to HTML.
+   */
+  public static final byte CONVERT = 1;
+
+  /**
+   * Only load the document to collect the log records.
+   */
+  public static final byte LOAD = 2;
+
+  private static final byte NULL = 0;
+  private static final byte STRING = 1;
+  private static final byte BOOLEAN = 2;
+  private static final byte INTEGER = 3;
+  private static final byte LONG = 4;
+  private static final byte MAP = 5;
+  private static final byte LIST = 6;
+
+  /**
+   * Frames larger than this are considered a corrupt stream, for example when something else wrote to stdout.
+   */
+  private static final int MAX_FRAME = 256 * 1024 * 1024;
+
+  private RenderWorkerProtocol() {
+  }
+
+  public static void writeRequest(@NotNull DataOutputStream out, @NotNull Request request) throws IOException {
+    ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    DataOutputStream frame = new DataOutputStream(buffer);
+    frame.writeByte(request.getKind());
+    writeString(frame, request.getInstanceKey());
+    writeValue(frame, request.getExtensions());
+    writeValue(frame, request.getOptions());
+    writeString(frame, request.getText());
+    writeFrame(out, buffer);
+  }
+
+  /**
+   * Read the next request.
+   *
+   * @return the request, or <code>null</code> if the stream has been closed
+   */
+  @Nullable
+  @SuppressWarnings("unchecked")
+  public static Request readRequest(@NotNull DataInputStream in) throws IOException {
+    DataInputStream frame = readFrame(in);
+    if (frame == null) {
+      return null;
+    }
+    byte kind = frame.readByte();
+    String instanceKey = readString(frame);
+    List<String> extensions = (List<String>) readValue(frame);
+    Map<String, Object> options = (Map<String, Object>) readValue(frame);
+    String text = readString(frame);
+    return new Request(kind, instanceKey, extensions, options, text);
+  }
+
+  public static void writeResponse(@NotNull DataOutputStream out, @NotNull Response response) throws IOException {
+    ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    DataOutputStream frame = new DataOutputStream(buffer);
+    writeString(frame, response.getHtml());
+    writeString(frame, response.getOut());
+    writeString(frame, response.getErr());
+    writeString(frame, response.getError());
+    frame.writeLong(response.getUsedMemory());
+    frame.writeInt(response.getLogRecords().size());
+    for (LogRecord logRecord : response.getLogRecords()) {
+      frame.writeByte(logRecord.getSeverity().ordinal());
+      writeString(frame, logRecord.getMessage());
+      writeString(frame, logRecord.getSourceFileName());
+      writeString(frame, logRecord.getSourceMethodName());
+      Cursor cursor = logRecord.getCursor();
+      frame.writeBoolean(cursor != null);
+      if (cursor != null) {
+        frame.writeInt(cursor.getLineNumber());
+        writeString(frame, cursor.getPath());
+        writeString(frame, cursor.getDir());
+        writeString(frame, cursor.getFile());
+      }
+    }
+    writeFrame(out, buffer);
+  }
+
+  /**
+   * Read the next response.
+   *
+   * @throws EOFException if the worker closed the stream, for example as it terminated
+   */
+  @NotNull
+  public static Response readResponse(@NotNull DataInputStream in) throws IOException {
+    DataInputStream frame = readFrame(in);
+    if (frame == null) {
+      throw new EOFException("worker closed the connection");
+    }
+    String html = readString(frame);
+    String out = readString(frame);
+    String err = readString(frame);
+    String error = readString(frame);
+    long usedMemory = frame.readLong();
+    int count = frame.readInt();
+    List<LogRecord> logRecords = new ArrayList<>(count);
+    Severity[] severities = Severity.values();
+    for (int i = 0; i < count; ++i) {
+      Severity severity = severities[frame.readByte()];
+      String message = readString(frame);
+      String sourceFileName = readString(frame);
+      String sourceMethodName = readString(frame);
+      Cursor cursor = null;
+      if (frame.readBoolean()) {
+        cursor = new WorkerCursor(frame.readInt(), readString(frame), readString(frame), readString(frame));
+      }
+      logRecords.add(new LogRecord(severity, cursor, message, sourceFileName, sourceMethodName));
+    }
+    return new Response(html, out, err, error, usedMemory, logRecords);
+  }
+
+  private static void writeFrame(DataOutputStream out, ByteArrayOutputStream buffer) throws IOException {
+    out.writeInt(buffer.size());
+    buffer.writeTo(out);
+    out.flush();
+  }
+
+  @Nullable
+  private static DataInputStream readFrame(DataInputStream in) throws IOException {
+    int length;
+    try {
+      length = in.readInt();
+    } catch (EOFException e) {
+      return null;
+    }
+    if (length < 0 || length > MAX_FRAME) {
+      throw new IOException("corrupt frame of length " + length);
+    }
+    byte[] payload = new byte[length];
+    in.readFully(payload);
+    return new DataInputStream(new ByteArrayInputStream(payload));
+  }
+
+  private static void writeString(DataOutputStream out, @Nullable String value) throws IOException {
+    if (value == null) {
+      out.writeInt(-1);
+    } else {
+      byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+      out.writeInt(bytes.length);
+      out.write(bytes);
+    }
+  }
+
+  @Nullable
+  private static String readString(DataInputStream in) throws IOException {
+    int length = in.readInt();
+    if (length < 0) {
+      return null;
+    }
+    byte[] bytes = new byte[length];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static void writeValue(DataOutputStream out, @Nullable Object value) throws IOException {
+    if (value == null) {
+      out.writeByte(NULL);
+    } else if (value instanceof Boolean) {
+      out.writeByte(BOOLEAN);
+      out.writeBoolean((Boolean) value);
+    } else if (value instanceof Integer) {
+      out.writeByte(INTEGER);
+      out.writeInt((Integer) value);
+    } else if (value instanceof Long) {
+      out.writeByte(LONG);
+      out.writeLong((Long) value);
+    } else if (value instanceof Map) {
+      out.writeByte(MAP);
+      Map<?, ?> map = (Map<?, ?>) value;
+      out.writeInt(map.size());
+      for (Map.Entry<?, ?> entry : map.entrySet()) {
+        writeString(out, String.valueOf(entry.getKey()));
+        writeValue(out, entry.getValue());
+      }
+    } else if (value instanceof List) {
+      out.writeByte(LIST);
+      List<?> list = (List<?>) value;
+      out.writeInt(list.size());
+      for (Object element : list) {
+        writeValue(out, element);
+      }
+    } else {
+      // options like the base directory are passed as strings to Asciidoctor anyway
+      out.writeByte(STRING);
+      writeString(out, value.toString());
+    }
+  }
+
+  @Nullable
+  private static Object readValue(DataInputStream in) throws IOException {
+    byte type = in.readByte();
+    switch (type) {
+      case NULL:
+        return null;
+      case STRING:
+        return readString(in);
+      case BOOLEAN:
+        return in.readBoolean();
+      case INTEGER:
+        return in.readInt();
+      case LONG:
+        return in.readLong();
+      case MAP:
+        int size = in.readInt();
+        Map<String, Object> map = new LinkedHashMap<>();
+        for (int i = 0; i < size; ++i) {
+          String key = readString(in);
+          map.put(key, readValue(in));
+        }
+        return map;
+      case LIST:
+        int length = in.readInt();
+        List<Object> list = new ArrayList<>(length);
+        for (int i = 0; i < length; ++i) {
+          list.add(readValue(in));
+        }
+        return list;
+      default:
+        throw new IOException("unknown value type " + type);
+    }
+  }
+
+  public static final class Request {
+    private final byte kind;
+    private final String instanceKey;
+    private final List<String> extensions;
+    private final Map<String, Object> options;
+    private final String text;
+
+    /**
+     * @param kind        either {@link #CONVERT} or {@link #LOAD}
+     * @param instanceKey identifies the set of extensions, the worker creates a new Asciidoctor instance when it
+     *                    changes
+     * @param extensions  extensions to load into a new instance
+     * @param options     options passed to Asciidoctor
+     * @param text        content to be converted
+     */
+    public Request(byte kind, @NotNull String instanceKey, @NotNull List<String> extensions,
+                   @NotNull Map<String, Object> options, @NotNull String text) {
+      this.kind = kind;
+      this.instanceKey = instanceKey;
+      this.extensions = extensions;
+      this.options = options;
+      this.text = text;
+    }
+
+    public byte getKind() {
+      return kind;
+    }
+
+    public String getInstanceKey() {
+      return instanceKey;
+    }
+
+    public List<String> getExtensions() {
+      return extensions;
+    }
+
+    public Map<String, Object> getOptions() {
+      return options;
+    }
+
+    public String getText() {
+      return text;
+    }
+  }
+
+  public static final class Response {
+    private final String html;
+    private final String out;
+    private final String err;
+    private final String error;
+    private final long usedMemory;
+    private final List<LogRecord> logRecords;
+
+    /**
+     * @param html       the HTML, <code>null</code> if the document has only been loaded or the conversion failed
+     * @param out        output of the conversion on stdout
+     * @param err        output of the conversion on stderr
+     * @param error      stack trace if the conversion failed, otherwise <code>null</code>
+     * @param usedMemory heap used by the worker after the conversion, in bytes
+     * @param logRecords messages Asciidoctor logged during the conversion
+     */
+    public Response(@Nullable String html, @NotNull String out, @NotNull String err, @Nullable String error,
+                    long usedMemory, @NotNull List<LogRecord> logRecords) {
+      this.html = html;
+      this.out = out;
+      this.err = err;
+      this.error = error;
+      this.usedMemory = usedMemory;
+      this.logRecords = Collections.unmodifiableList(logRecords);
+    }
+
+    public String getHtml() {
+      return html;
+    }
+
+    public String getOut() {
+      return out;
+    }
+
+    public String getErr() {
+      return err;
+    }
+
+    public String getError() {
+      return error;
+    }
+
+    public long getUsedMemory() {
+      return usedMemory;
+    }
+
+    public List<LogRecord> getLogRecords() {
+      return logRecords;
+    }
+  }
+
+  private static final class WorkerCursor implements Cursor {
+    private final int lineNumber;
+    private final String path;
+    private final String dir;
+    private final String file;
+
+    private WorkerCursor(int lineNumber, String path, String dir, String file) {
+      this.lineNumber = lineNumber;
+      this.path = path;
+      this.dir = dir;
+      this.file = file;
+    }
+
+    @Override
+    public int getLineNumber() {
+      return lineNumber;
+    }
+
+    @Override
+    public String getPath() {
+      return path;
+    }
+
+    @Override
+    public String getDir() {
+      return dir;
+    }
+
+    @Override
+    public String getFile() {
+      return file;
+    }
+  }
+}
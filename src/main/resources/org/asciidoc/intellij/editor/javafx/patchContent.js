@@ -0,0 +1,150 @@
+if (window.__IntelliJTools === undefined) {
+  window.__IntelliJTools = {}
+}
+
+window.__IntelliJTools.patchContent = (function () {
+
+  // content as it has been passed in, the live content might have been changed by MathJax since
+  var source;
+
+  // lines of blocks change whenever lines are added or removed above them, therefore they are ignored when comparing
+  var normalize = function (html) {
+    return html.replace(/\b(data-line-[^\s"]*-)\d+/g, '$1')
+  }
+
+  var shapeOf = function (node) {
+    if (node.nodeType === Node.ELEMENT_NODE) {
+      return normalize(node.outerHTML)
+    }
+    return node.nodeType + ':' + node.nodeValue
+  }
+
+  var shapes = function (nodes) {
+    var result = []
+    for (var i = 0; i < nodes.length; i++) {
+      result.push(shapeOf(nodes[i]))
+    }
+    return result
+  }
+
+  var parse = function (html) {
+    var wrapper = document.createElement('div')
+    wrapper.innerHTML = html
+    var content = wrapper.firstElementChild
+    if (!content || content.id !== 'content') {
+      return null
+    }
+    return content
+  }
+
+  // copy the source lines of a block that has only been moved, so that clicking it still selects the right line
+  var syncLines = function (live, to) {
+    if (live.nodeType !== Node.ELEMENT_NODE) {
+      return
+    }
+    var liveBlocks = [live].concat(Array.prototype.slice.call(live.getElementsByClassName('has-source-line')))
+    var newBlocks = [to].concat(Array.prototype.slice.call(to.getElementsByClassName('has-source-line')))
+    if (liveBlocks.length !== newBlocks.length) {
+      return
+    }
+    for (var i = 0; i < liveBlocks.length; i++) {
+      if (liveBlocks[i].className !== newBlocks[i].className) {
+        liveBlocks[i].className = newBlocks[i].className
+      }
+    }
+  }
+
+  var sameElement = function (a, b) {
+    return a.nodeType === Node.ELEMENT_NODE && b.nodeType === Node.ELEMENT_NODE
+      && shapeOf(a.cloneNode(false)) === shapeOf(b.cloneNode(false))
+  }
+
+  /*
+   * Patch the children of the live element that differ between the old and the new content.
+   * Unchanged children at the start and at the end are kept, a single changed child is patched recursively,
+   * all others are replaced. Returns false if the live element doesn't match the old content.
+   */
+  var patch = function (live, from, to, inserted) {
+    var liveNodes = Array.prototype.slice.call(live.childNodes)
+    var oldNodes = from.childNodes
+    var newNodes = to.childNodes
+    if (liveNodes.length !== oldNodes.length) {
+      // changed by MathJax or another script
+      return false
+    }
+    var oldShapes = shapes(oldNodes)
+    var newShapes = shapes(newNodes)
+    var start = 0
+    while (start < oldNodes.length && start < newNodes.length && oldShapes[start] === newShapes[start]) {
+      syncLines(liveNodes[start], newNodes[start])
+      start++
+    }
+    var oldEnd = oldNodes.length
+    var newEnd = newNodes.length
+    while (oldEnd > start && newEnd > start && oldShapes[oldEnd - 1] === newShapes[newEnd - 1]) {
+      syncLines(liveNodes[oldEnd - 1], newNodes[newEnd - 1])
+      oldEnd--
+      newEnd--
+    }
+    if (oldEnd - start === 1 && newEnd - start === 1 && sameElement(oldNodes[start], newNodes[start])
+      && patch(liveNodes[start], oldNodes[start], newNodes[start], inserted)) {
+      syncLines(liveNodes[start], newNodes[start])
+      return true
+    }
+    var next = oldEnd < liveNodes.length ? liveNodes[oldEnd] : null
+    for (var i = start; i < oldEnd; i++) {
+      live.removeChild(liveNodes[i])
+    }
+    var onlyElements = true
+    for (var j = start; j < newEnd; j++) {
+      var node = newNodes[j].cloneNode(true)
+      live.insertBefore(node, next)
+      if (node.nodeType === Node.ELEMENT_NODE) {
+        inserted.push(node)
+      } else if (node.nodeType === Node.TEXT_NODE) {
+        onlyElements = false
+      }
+    }
+    if (!onlyElements) {
+      // math in text can only be found in the context of its element
+      inserted.push(live)
+    }
+    return true
+  }
+
+  /*
+   * Replace the content of the page with new content, touching only the blocks that changed.
+   * This keeps the scroll position, and scripts and MathJax don't need to process the whole page again.
+   * Returns false if there is no content to patch, the page needs to be loaded again then.
+   */
+  var patchContent = function (html, previous, lc, off) {
+    if (previous) {
+      // the page has just been loaded, its content is the starting point
+      source = parse(previous)
+    }
+    var live = document.getElementById('content')
+    var to = parse(html)
+    if (!source || !live || !to) {
+      return false
+    }
+    var inserted = []
+    if (!patch(live, source, to, inserted)) {
+      source = undefined
+      return false
+    }
+    source = to
+
+    if (window.MathJax && window.MathJax.Hub) {
+      for (var i = 0; i < inserted.length; i++) {
+        window.MathJax.Hub.Queue(['Typeset', window.MathJax.Hub, inserted[i]])
+      }
+    }
+    __IntelliJTools.processLinks && __IntelliJTools.processLinks()
+    __IntelliJTools.pickSourceLine && __IntelliJTools.pickSourceLine(lc, off)
+    __IntelliJTools.processImages && __IntelliJTools.processImages()
+    return true
+  }
+
+  return patchContent
+
+})()
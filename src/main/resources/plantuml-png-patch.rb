@@ -6,14 +6,55 @@ include ::Asciidoctor
 # The JavaFX preview doesn't support SVG well. Therefore we'll render all PlantUML images as PNG
 
 module SvgToPngHack
+  # attributes that are not passed on when generating the SVG
+  SKIPPED_ATTRIBUTES = %w(format target alt style cloaked-context role id title)
+
+  # content of the documents written by write_svg_source by their path, to skip writing unchanged documents
+  WRITTEN = {}
+
   # see https://github.com/asciidoctor/asciidoctor-diagram/blob/master/lib/asciidoctor-diagram/extensions.rb for the souce
   def process(parent, reader_or_target, attributes)
-    # render as SVG to be used for save-as functionality
-    attributes['format'] = 'svg'
-    super(parent, reader_or_target, attributes)
-    # render a second time for PNG to be used in preview
+    # a document written by write_svg_source asks for the SVG, an export keeps the format of the document
+    return super(parent, reader_or_target, attributes) if parent.document.attr? 'intellij-svg-export'
+    return super(parent, reader_or_target, attributes) if parent.document.attr? 'intellij-export'
+    # render only a PNG to be used in the preview
     attributes['format'] = 'png'
-    super(parent, reader_or_target, attributes)
+    block = super(parent, reader_or_target, attributes)
+    # the SVG for the save-as functionality is generated only when it is requested, store what is needed for this
+    begin
+      write_svg_source parent, reader_or_target, attributes, block
+    rescue => e
+      parent.document.logger.debug "unable to store source for SVG: #{e.message}"
+    end
+    block
+  end
+
+  # Write a document next to the PNG that generates the SVG for the diagram, see JavaFxHtmlPanel.saveImage
+  def write_svg_source(parent, reader_or_target, attributes, block)
+    return unless block && block.context == :image && respond_to?(:image_output_dir, true)
+    image_dir = image_output_dir(parent)
+    name = File.basename(block.attr('target'), '.*')
+    diagram = self.class.name.include?('Salt') ? 'salt' : 'plantuml'
+    attrlist = [diagram, name, 'format=svg']
+    attributes.each do |key, value|
+      next unless key.is_a?(String) && value.is_a?(String) && !SKIPPED_ATTRIBUTES.include?(key)
+      attrlist << %(#{key}="#{value.gsub('"', '\"')}")
+    end
+    content = %(:imagesoutdir: #{image_dir}\n:intellij-svg-export:\n\n)
+    if reader_or_target.respond_to? :source
+      source = reader_or_target.source
+      delimiter = '-' * [4, (source.scan(/^-+$/).map(&:length).max || 0) + 1].max
+      content += %([#{attrlist.join(',')}]\n#{delimiter}\n#{source}\n#{delimiter}\n)
+    else
+      path = parent.normalize_system_path(reader_or_target, parent.attr('docdir'))
+      content += %(#{diagram}::#{path}[#{attrlist.drop(1).join(',')}]\n)
+    end
+    file = File.join(image_dir, name + '.svg.adoc')
+    # the document only changes with the diagram, don't write it again on every render
+    return if WRITTEN[file] == content && File.exist?(file)
+    File.write(file, content) unless File.exist?(file) && File.read(file) == content
+    WRITTEN.clear if WRITTEN.size > 1000
+    WRITTEN[file] = content
   end
 end
 
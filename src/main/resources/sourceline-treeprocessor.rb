@@ -4,6 +4,10 @@ include ::Asciidoctor
 
 class SourceLineTreeProcessor < Extensions::Treeprocessor
   def process document
+    # no HTML will be created when validating, skip adding the source lines
+    return nil if document.attr? 'intellij-validate-only'
+    # source lines are only needed in the preview
+    return nil if document.attr? 'intellij-export'
 
     document.find_by.each do |node|
 
@@ -0,0 +1,73 @@
+require 'asciidoctor/extensions'
+
+include ::Asciidoctor
+
+# When the document is loaded for validation only, apply the substitutions of all blocks without converting
+# the document to HTML. This triggers the warnings for missing attributes and unresolved includes.
+
+class ValidationTreeProcessor < Extensions::Treeprocessor
+  def process document
+    if document.attr? 'intellij-validate-only'
+      validate document
+    end
+    nil
+  end
+
+  def validate node
+    node.title if node.title?
+    case node.context
+    when :document
+      node.blocks.each { |block| validate block }
+    when :dlist
+      node.items.each do |terms, description|
+        terms.each { |term| term.text }
+        validate description if description
+      end
+    when :list_item
+      node.text if node.text?
+      node.blocks.each { |block| validate block }
+    when :table
+      node.rows.by_section.each do |_, rows|
+        rows.each do |row|
+          row.each do |cell|
+            if cell.inner_document
+              validate cell.inner_document
+            else
+              cell.text
+            end
+          end
+        end
+      end
+    else
+      if node.content_model == :compound
+        node.blocks.each { |block| validate block }
+      elsif node.content_model != :empty
+        node.content
+      end
+    end
+  end
+end
+
+# Diagrams would be generated while the document is loaded, don't create them when validating.
+
+module ValidateOnlyDiagramStub
+  def process(parent, reader_or_target, attributes)
+    if parent.document.attr? 'intellij-validate-only'
+      nil
+    else
+      super
+    end
+  end
+end
+
+if defined? ::Asciidoctor::Diagram::Extensions::DiagramBlockProcessor
+  class ::Asciidoctor::Diagram::Extensions::DiagramBlockProcessor
+    prepend ValidateOnlyDiagramStub
+  end
+end
+
+if defined? ::Asciidoctor::Diagram::Extensions::DiagramBlockMacroProcessor
+  class ::Asciidoctor::Diagram::Extensions::DiagramBlockMacroProcessor
+    prepend ValidateOnlyDiagramStub
+  end
+end
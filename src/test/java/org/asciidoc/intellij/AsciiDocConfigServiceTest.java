@@ -0,0 +1,34 @@
+package org.asciidoc.intellij;
+
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class AsciiDocConfigServiceTest {
+
+  @Test
+  public void shouldParseAttributeEntriesAsSoftSetAttributes() {
+    Map<String, Object> attributes = AsciiDocConfigService.Config.parseAttributes(
+      ":imagesdir: images\r\n// comment\n////\nblock comment\n////\n\n:experimental:\n:sectanchors!:\n:!icons:\n");
+    assertEquals(4, attributes.size());
+    assertEquals("images@", attributes.get("imagesdir"));
+    assertEquals("@", attributes.get("experimental"));
+    assertEquals(Boolean.FALSE, attributes.get("sectanchors"));
+    assertEquals(Boolean.FALSE, attributes.get("icons"));
+  }
+
+  @Test
+  public void shouldNotParseConfigWithOtherContent() {
+    assertNull(AsciiDocConfigService.Config.parseAttributes(":attr: value\n\nSome text"));
+  }
+
+  @Test
+  public void shouldNotParseAttributeReferencesOrContinuations() {
+    assertNull(AsciiDocConfigService.Config.parseAttributes(":attr: {other}"));
+    assertNull(AsciiDocConfigService.Config.parseAttributes(":attr: first \\\nsecond"));
+  }
+
+}
@@ -0,0 +1,42 @@
+package org.asciidoc.intellij;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AsciiDocDiagramCacheTest {
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void shouldEvictLeastRecentlyUsedFolders() throws IOException {
+    File root = temporaryFolder.getRoot();
+    File oldest = folder(root, "a", 1000L);
+    File middle = folder(root, "b", 2000L);
+    File newest = folder(root, "c", 3000L);
+    AsciiDocDiagramCache cache = new AsciiDocDiagramCache(root.toPath(), 250);
+
+    cache.evict();
+
+    assertFalse(oldest.exists());
+    assertTrue(middle.exists());
+    assertTrue(newest.exists());
+  }
+
+  private static File folder(File root, String name, long lastUsed) throws IOException {
+    File folder = new File(root, name);
+    assertTrue(folder.mkdir());
+    Files.write(new File(folder, "diagram.png").toPath(), new byte[100]);
+    assertTrue(folder.setLastModified(lastUsed));
+    return folder;
+  }
+
+}
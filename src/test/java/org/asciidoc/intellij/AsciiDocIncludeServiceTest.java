@@ -0,0 +1,45 @@
+package org.asciidoc.intellij;
+
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.testFramework.fixtures.LightPlatformCodeInsightFixtureTestCase;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+/**
+ * Tests for {@link AsciiDocIncludeService} and {@link org.asciidoc.intellij.indexer.AsciiDocIncludeIndex}.
+ */
+public class AsciiDocIncludeServiceTest extends LightPlatformCodeInsightFixtureTestCase {
+
+  public void testTransitiveIncluders() {
+    VirtualFile book = myFixture.addFileToProject("book.adoc", "= Book\n\ninclude::chapters/chapter.adoc[]\n").getVirtualFile();
+    VirtualFile chapter = myFixture.addFileToProject("chapters/chapter.adoc", "== Chapter\n\ninclude::section.adoc[]\n").getVirtualFile();
+    VirtualFile section = myFixture.addFileToProject("chapters/section.adoc", "=== Section\n").getVirtualFile();
+
+    AsciiDocIncludeService service = AsciiDocIncludeService.getInstance(getProject());
+
+    assertEquals(new HashSet<>(Arrays.asList(book, chapter)), service.getIncluders(section));
+    assertEquals(new HashSet<>(Arrays.asList(chapter, section)), service.getIncludes(book));
+    assertEmpty(service.getIncluders(book));
+  }
+
+  public void testAttributesInTargetsAreResolved() {
+    VirtualFile book = myFixture.addFileToProject("book.adoc", ":chapters: chapters\n\ninclude::{chapters}/chapter.adoc[]\n").getVirtualFile();
+    VirtualFile chapter = myFixture.addFileToProject("chapters/chapter.adoc", "== Chapter\n").getVirtualFile();
+
+    assertEquals(new HashSet<>(Arrays.asList(book)), AsciiDocIncludeService.getInstance(getProject()).getIncluders(chapter));
+  }
+
+  public void testCrossReferencesAreDependencies() {
+    VirtualFile book = myFixture.addFileToProject("book.adoc", "See <<other#anchor,other>> and xref:third.adoc#top[third].\n").getVirtualFile();
+    VirtualFile other = myFixture.addFileToProject("other.adoc", "[[anchor]]\n== Other\n").getVirtualFile();
+    VirtualFile third = myFixture.addFileToProject("third.adoc", "== Third\n").getVirtualFile();
+
+    AsciiDocIncludeService service = AsciiDocIncludeService.getInstance(getProject());
+
+    assertEquals(new HashSet<>(Arrays.asList(other, third)), service.getDependencies(book));
+    assertEmpty(service.getIncludes(book));
+    assertEmpty(service.getIncluders(other));
+  }
+
+}
@@ -1,10 +1,13 @@
 package org.asciidoc.intellij;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 
 import com.intellij.testFramework.fixtures.LightPlatformCodeInsightFixtureTestCase;
 import org.asciidoc.intellij.settings.AsciiDocApplicationSettings;
+import org.asciidoctor.log.LogRecord;
 import org.junit.Assert;
 
 /**
@@ -40,4 +43,18 @@ public class AsciiDocTest extends LightPlatformCodeInsightFixtureTestCase {
     String html = asciidoc.render("{attr}", Collections.emptyList());
     Assert.assertTrue(html.contains(expectedContent));
   }
+
+  public void testShouldValidateWithoutRenderingDiagrams() {
+    List<LogRecord> records = new ArrayList<>();
+    asciidoc.validate("[plantuml,validation,format=svg]\n" +
+        "----\n" +
+        "List <|.. ArrayList\n" +
+        "----\n" +
+        "\n" +
+        "include::missing.adoc[]\n", Collections.emptyMap(), Collections.emptyList(),
+      (boasOut, boasErr, logRecords) -> records.addAll(logRecords));
+    Assert.assertEquals(1, records.size());
+    Assert.assertTrue(records.get(0).getMessage().startsWith("include file not found"));
+    Assert.assertFalse(new File("validation.png").exists());
+  }
 }
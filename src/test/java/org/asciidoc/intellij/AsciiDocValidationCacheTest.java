@@ -0,0 +1,53 @@
+package org.asciidoc.intellij;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class AsciiDocValidationCacheTest {
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void shouldKeepMessagesAcrossInstances() {
+    File file = new File(temporaryFolder.getRoot(), "cache/validation.dat");
+    AsciiDocValidationCache cache = new AsciiDocValidationCache(file.toPath());
+    cache.put("/doc.adoc", "key", Collections.singletonList(new AsciiDocValidationCache.Message(3, "include file not found")));
+    cache.save();
+
+    List<AsciiDocValidationCache.Message> messages = new AsciiDocValidationCache(file.toPath()).get("/doc.adoc", "key");
+
+    assertEquals(1, messages.size());
+    assertEquals(3, messages.get(0).getLine());
+    assertEquals("include file not found", messages.get(0).getText());
+  }
+
+  @Test
+  public void shouldMissWhenKeyChanged() {
+    AsciiDocValidationCache cache = new AsciiDocValidationCache(new File(temporaryFolder.getRoot(), "validation.dat").toPath());
+    cache.put("/doc.adoc", "key", Collections.emptyList());
+
+    assertNull(cache.get("/doc.adoc", "other"));
+  }
+
+  @Test
+  public void shouldRemoveEntriesOfDeletedFiles() {
+    AsciiDocValidationCache cache = new AsciiDocValidationCache(new File(temporaryFolder.getRoot(), "validation.dat").toPath());
+    cache.put("/a.adoc", "key", Collections.emptyList());
+    cache.put("/b.adoc", "key", Collections.emptyList());
+
+    cache.retain(Collections.singletonList("/a.adoc"));
+
+    assertEquals(Collections.emptyList(), cache.get("/a.adoc", "key"));
+    assertNull(cache.get("/b.adoc", "key"));
+  }
+
+}
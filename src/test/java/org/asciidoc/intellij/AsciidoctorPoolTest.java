@@ -0,0 +1,125 @@
+package org.asciidoc.intellij;
+
+import org.asciidoctor.Asciidoctor;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class AsciidoctorPoolTest {
+
+  private final AtomicInteger created = new AtomicInteger();
+  private final AtomicInteger shutdown = new AtomicInteger();
+
+  @Test
+  public void shouldReuseReturnedInstanceForSameKey() {
+    AsciidoctorPool pool = new AsciidoctorPool(2);
+    Asciidoctor first = pool.checkout("a", this::create);
+    pool.checkin("a", first);
+    Asciidoctor second = pool.checkout("a", this::create);
+    assertSame(first, second);
+    assertEquals(1, created.get());
+  }
+
+  @Test
+  public void shouldCreateSeparateInstancesForConcurrentCheckouts() {
+    AsciidoctorPool pool = new AsciidoctorPool(2);
+    Asciidoctor first = pool.checkout("a", this::create);
+    Asciidoctor second = pool.checkout("a", this::create);
+    assertNotSame(first, second);
+    assertEquals(2, created.get());
+  }
+
+  @Test
+  public void shouldReplaceIdleInstanceOfOtherKeyWhenExhausted() {
+    AsciidoctorPool pool = new AsciidoctorPool(1);
+    Asciidoctor first = pool.checkout("a", this::create);
+    pool.checkin("a", first);
+    Asciidoctor second = pool.checkout("b", this::create);
+    assertNotSame(first, second);
+    assertEquals(1, shutdown.get());
+  }
+
+  @Test
+  public void shouldReplaceInstanceIdleTheLongest() throws InterruptedException {
+    AsciidoctorPool pool = new AsciidoctorPool(2);
+    Asciidoctor a = pool.checkout("a", this::create);
+    Asciidoctor b = pool.checkout("b", this::create);
+    pool.checkin("a", a);
+    Thread.sleep(5);
+    pool.checkin("b", b);
+    pool.checkout("c", this::create);
+    // instance for "b" is still available, instance for "a" has been replaced
+    assertSame(b, pool.checkout("b", this::create));
+    assertEquals(3, created.get());
+    assertEquals(1, shutdown.get());
+  }
+
+  @Test
+  public void shouldEvictIdleInstancesAndFreeTheirSlots() {
+    AsciidoctorPool pool = new AsciidoctorPool(1);
+    Asciidoctor first = pool.checkout("a", this::create);
+    pool.checkin("a", first);
+    assertEquals(0, pool.evictIdleSince(0));
+    assertEquals(1, pool.evictIdleSince(System.currentTimeMillis() + 1));
+    assertEquals(1, shutdown.get());
+    assertNotSame(first, pool.checkout("a", this::create));
+  }
+
+  @Test(timeout = 5000)
+  public void shouldWaitForInstanceWhenExhausted() throws InterruptedException {
+    AsciidoctorPool pool = new AsciidoctorPool(1);
+    Asciidoctor first = pool.checkout("a", this::create);
+    Thread returning = new Thread(() -> {
+      try {
+        Thread.sleep(100);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      pool.checkin("a", first);
+    });
+    returning.start();
+    Asciidoctor second = pool.checkout("a", this::create);
+    returning.join();
+    assertSame(first, second);
+    assertEquals(1, created.get());
+  }
+
+  @Test
+  public void shouldFreeSlotOfDiscardedInstance() {
+    AsciidoctorPool pool = new AsciidoctorPool(1);
+    Asciidoctor first = pool.checkout("a", this::create);
+    pool.discard(first);
+    assertEquals(1, shutdown.get());
+    assertNotSame(first, pool.checkout("a", this::create));
+    assertEquals(2, created.get());
+  }
+
+  @Test
+  public void shouldSizeByCoresAndHeap() {
+    long mb = 1024 * 1024;
+    // default IDE heap
+    assertEquals(2, AsciidoctorPool.size(8, 750 * mb, 128 * mb));
+    assertEquals(4, AsciidoctorPool.size(4, 4096 * mb, 128 * mb));
+    assertEquals(8, AsciidoctorPool.size(16, 2048 * mb, 128 * mb));
+    // at least two instances, even with a single core or a small heap
+    assertEquals(2, AsciidoctorPool.size(1, 4096 * mb, 128 * mb));
+    assertEquals(2, AsciidoctorPool.size(8, 100 * mb, 128 * mb));
+  }
+
+  private Asciidoctor create() {
+    created.incrementAndGet();
+    return (Asciidoctor) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{Asciidoctor.class},
+      (proxy, method, args) -> {
+        if (method.getName().equals("shutdown")) {
+          shutdown.incrementAndGet();
+        }
+        return null;
+      });
+  }
+
+}
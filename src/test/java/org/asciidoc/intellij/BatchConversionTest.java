@@ -0,0 +1,68 @@
+package org.asciidoc.intellij;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class BatchConversionTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void shouldChangeHashWhenNestedIncludeChanges() throws Exception {
+    Path base = folder.getRoot().toPath();
+    write(base, "chapter.adoc", "include::parts/part.adoc[]\n");
+    write(base, "parts/part.adoc", "plantuml::diagram.puml[]\n");
+    write(base, "parts/diagram.puml", "A -> B\n");
+    String text = "= Book\n\ninclude::chapter.adoc[leveloffset=+1]\n";
+    String before = hash(text, base);
+    assertEquals(before, hash(text, base));
+
+    write(base, "parts/diagram.puml", "A -> C\n");
+    String after = hash(text, base);
+    assertFalse(before.equals(after));
+  }
+
+  @Test
+  public void shouldIgnoreOtherMacrosAndUnresolvableTargets() throws Exception {
+    Path base = folder.getRoot().toPath();
+    String text = "image::picture.png[]\ninclude::{chapters}/a.adoc[]\ninclude::https://example.com/a.adoc[]\n";
+    String before = hash(text, base);
+    write(base, "picture.png", "png");
+    assertEquals(before, hash(text, base));
+  }
+
+  @Test
+  public void shouldHandleRecursiveIncludes() throws Exception {
+    Path base = folder.getRoot().toPath();
+    write(base, "a.adoc", "include::b.adoc[]\n");
+    write(base, "b.adoc", "include::a.adoc[]\n");
+    hash("include::a.adoc[]\n", base);
+  }
+
+  private static String hash(String text, Path base) throws IOException, NoSuchAlgorithmException {
+    MessageDigest md = MessageDigest.getInstance("MD5");
+    BatchConversion.addDependencies(md, text, base, new HashSet<>(), 0);
+    return Arrays.toString(md.digest());
+  }
+
+  private static void write(Path base, String name, String content) throws IOException {
+    File file = base.resolve(name).toFile();
+    Files.createDirectories(file.getParentFile().toPath());
+    Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+  }
+}
@@ -0,0 +1,66 @@
+package org.asciidoc.intellij;
+
+import org.asciidoctor.Asciidoctor;
+import org.asciidoctor.OptionsBuilder;
+import org.asciidoctor.SafeMode;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DocumentIncludeProcessorTest {
+
+  private static Asciidoctor asciidoctor;
+
+  private static Asciidoctor plain;
+
+  @BeforeClass
+  public static void setUp() {
+    plain = Asciidoctor.Factory.create();
+    asciidoctor = Asciidoctor.Factory.create();
+    asciidoctor.javaExtensionRegistry().includeProcessor(DocumentIncludeProcessor.class);
+  }
+
+  @AfterClass
+  public static void tearDown() {
+    plain.shutdown();
+    asciidoctor.shutdown();
+  }
+
+  @Test
+  public void shouldShowUnresolvedDirectiveLikeAsciidoctor() throws IOException {
+    Path dir = Files.createTempDirectory("asciidoctor-include");
+    try {
+      String text = "= Title\n\ninclude::missing.adoc[leveloffset=+1, lines=\"1..2,4\"]\n";
+      Map<String, Object> options = OptionsBuilder.options().safe(SafeMode.UNSAFE).baseDir(dir.toFile()).asMap();
+      assertEquals(plain.convert(text, options),
+        DocumentIncludeProcessor.withMemo(text, () -> asciidoctor.convert(text, options)));
+    } finally {
+      Files.delete(dir);
+    }
+  }
+
+  @Test
+  public void shouldShowAttributesOfUnresolvedDirectiveInIncludedFile() throws IOException {
+    Path dir = Files.createTempDirectory("asciidoctor-include");
+    Path included = dir.resolve("a.adoc");
+    try {
+      Files.write(included, "include::missing.adoc[lines=1;3, opts=x]\n".getBytes(StandardCharsets.UTF_8));
+      String text = "include::a.adoc[]\n";
+      Map<String, Object> options = OptionsBuilder.options().safe(SafeMode.UNSAFE).baseDir(dir.toFile()).asMap();
+      String html = DocumentIncludeProcessor.withMemo(text, () -> asciidoctor.convert(text, options));
+      assertTrue(html, html.contains(" - include::missing.adoc[lines=1;3, opts=x]"));
+    } finally {
+      Files.delete(included);
+      Files.delete(dir);
+    }
+  }
+}
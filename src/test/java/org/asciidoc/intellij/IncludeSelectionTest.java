@@ -0,0 +1,82 @@
+package org.asciidoc.intellij;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+public class IncludeSelectionTest {
+
+  private static final List<String> LINES = Arrays.asList(
+    "first",
+    "// tag::a[]",
+    "in a",
+    "// tag::b[]",
+    "in a and b",
+    "// end::b[]",
+    "// end::a[]",
+    "last"
+  );
+
+  @Test
+  public void shouldSelectAllLinesWithoutAttributes() {
+    IncludeSelection selection = IncludeSelection.select(LINES, Collections.emptyMap(), this::fail);
+
+    assertEquals(LINES, selection.getLines());
+    assertEquals(1, selection.getFirstLineNumber());
+  }
+
+  @Test
+  public void shouldSelectLineRanges() {
+    IncludeSelection selection = IncludeSelection.select(LINES, attributes("lines", "3;7..-1"), this::fail);
+
+    assertEquals(Arrays.asList("in a", "// end::a[]", "last"), selection.getLines());
+    assertEquals(3, selection.getFirstLineNumber());
+  }
+
+  @Test
+  public void shouldSelectTagWithNestedTags() {
+    IncludeSelection selection = IncludeSelection.select(LINES, attributes("tag", "a"), this::fail);
+
+    assertEquals(Arrays.asList("in a", "in a and b"), selection.getLines());
+    assertEquals(3, selection.getFirstLineNumber());
+  }
+
+  @Test
+  public void shouldExcludeNegatedTag() {
+    IncludeSelection selection = IncludeSelection.select(LINES, attributes("tags", "a;!b"), this::fail);
+
+    assertEquals(Collections.singletonList("in a"), selection.getLines());
+  }
+
+  @Test
+  public void shouldSelectUntaggedLines() {
+    IncludeSelection selection = IncludeSelection.select(LINES, attributes("tags", "**;!*"), this::fail);
+
+    assertEquals(Arrays.asList("first", "last"), selection.getLines());
+  }
+
+  @Test
+  public void shouldWarnAboutMissingTag() {
+    List<String> warnings = new ArrayList<>();
+
+    IncludeSelection selection = IncludeSelection.select(LINES, attributes("tag", "c"), warnings::add);
+
+    assertEquals(Collections.emptyList(), selection.getLines());
+    assertEquals(Collections.singletonList("tag 'c' not found in include file"), warnings);
+  }
+
+  private static Map<String, Object> attributes(String name, String value) {
+    return Collections.singletonMap(name, value);
+  }
+
+  private void fail(String warning) {
+    throw new AssertionError("unexpected warning: " + warning);
+  }
+
+}
@@ -0,0 +1,139 @@
+package org.asciidoc.intellij;
+
+import org.asciidoctor.Asciidoctor;
+import org.asciidoctor.OptionsBuilder;
+import org.asciidoctor.SafeMode;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class IncrementalRendererTest {
+
+  private static Asciidoctor asciidoctor;
+
+  private final List<String> fragments = new ArrayList<>();
+
+  @BeforeClass
+  public static void setUp() {
+    asciidoctor = Asciidoctor.Factory.create();
+  }
+
+  @AfterClass
+  public static void tearDown() {
+    asciidoctor.shutdown();
+  }
+
+  @Test
+  public void shouldRenderPreambleAndEachSectionSeparately() {
+    String content = "= Title\n:attr: value\n\nPreamble\n\n== One\n\nText\n\n== Two\n\nText\n";
+    String html = IncrementalRenderer.render(content, Arrays.asList(5, 9), this::convert);
+    assertEquals(3, fragments.size());
+    assertEquals("= Title\n:attr: value\n\nPreamble\n", fragments.get(0));
+    assertEquals(":attr: value\n\n== One\n\nText\n", fragments.get(1));
+    assertEquals(":attr: value\n\n== Two\n\nText\n", fragments.get(2));
+    assertTrue(html.startsWith("<div id=\"content\">\n"));
+  }
+
+  @Test
+  public void shouldCarryForwardAttributesOfPreviousSections() {
+    String content = "== One\n:first: 1\n\n----\n:notAnAttribute: 1\n----\n\n== Two\n";
+    IncrementalRenderer.render(content, Arrays.asList(0, 7), this::convert);
+    assertEquals(2, fragments.size());
+    assertEquals(":first: 1\n\n== Two\n", fragments.get(1));
+  }
+
+  @Test
+  public void shouldShiftSourceLinesToPositionInDocument() {
+    String content = ":attr: value\n\n== One\n\n== Two\n";
+    String html = IncrementalRenderer.render(content, Arrays.asList(2, 4), this::convert);
+    // section "Two" is the fifth line of the document
+    assertTrue(html, html.contains("<h2 id=\"_two\" class=\"data-line-stdin-5\">Two</h2>"));
+    assertTrue(html, html.contains("<h2 id=\"_one\" class=\"data-line-stdin-3\">One</h2>"));
+  }
+
+  @Test
+  public void shouldResolveReferencesToOtherSections() {
+    String content = "== One\n\n== Two\n";
+    String html = IncrementalRenderer.render(content, Arrays.asList(0, 2), this::convert);
+    assertTrue(html, html.contains("<a href=\"#_two\">Two</a>"));
+  }
+
+  @Test
+  public void shouldNotRenderIncrementallyWithTableOfContents() {
+    String content = ":toc:\n\n== One\n\n== Two\n";
+    assertNull(IncrementalRenderer.render(content, Arrays.asList(2, 4), this::convert));
+  }
+
+  @Test
+  public void shouldRenderSectionsLikeFullDocument() {
+    String content = "= Title\n:attr: value\n\n== One\n\nText {attr}\n\n== Two\n\nSee <<_one>>.\n";
+    assertNotNull(IncrementalRenderer.render(content, Arrays.asList(3, 7), this::asciidoctor));
+    assertEquals(asciidoctor(content), preview(content, Arrays.asList(3, 7)));
+  }
+
+  @Test
+  public void shouldNumberCaptionsLikeFullDocument() {
+    String content = "= Title\n\n== One\n\n.First\nimage::a.png[]\n\n.First\n|===\n|a\n|===\n\n"
+      + "== Two\n\n.Second\nimage::b.png[]\n\n.Second\n|===\n|b\n|===\n";
+    assertEquals(asciidoctor(content), preview(content, Arrays.asList(2, 12)));
+  }
+
+  @Test
+  public void shouldGenerateUniqueIdsLikeFullDocument() {
+    String content = "= Title\n\n== Introduction\n\n== Details\n\n=== Introduction\n";
+    assertEquals(asciidoctor(content), preview(content, Arrays.asList(2, 4)));
+  }
+
+  @Test
+  public void shouldCountLikeFullDocument() {
+    String content = "= Title\n\n== One\n\nStep {counter:step}\n\n== Two\n\nStep {counter:step}\n";
+    assertEquals(asciidoctor(content), preview(content, Arrays.asList(2, 6)));
+  }
+
+  /**
+   * The HTML the preview shows: the incremental render if possible, otherwise the full render.
+   */
+  private String preview(String content, List<Integer> sectionLines) {
+    String html = IncrementalRenderer.render(content, sectionLines, this::asciidoctor);
+    return html != null ? html : asciidoctor(content);
+  }
+
+  private String asciidoctor(String content) {
+    return "<div id=\"content\">\n" + asciidoctor.convert(content, OptionsBuilder.options().safe(SafeMode.UNSAFE))
+      + "\n</div>";
+  }
+
+  /**
+   * Minimal converter: renders section titles with their source line, and a reference to the section
+   * "Two" that can't be resolved when it isn't part of the fragment.
+   */
+  private String convert(String fragment) {
+    fragments.add(fragment);
+    StringBuilder sb = new StringBuilder("<div id=\"content\">\n");
+    String[] lines = fragment.split("\n", -1);
+    boolean hasTwo = false;
+    for (int i = 0; i < lines.length; ++i) {
+      if (lines[i].startsWith("== ")) {
+        String title = lines[i].substring(3);
+        hasTwo |= title.equals("Two");
+        sb.append("<h2 id=\"_").append(title.toLowerCase()).append("\" class=\"data-line-stdin-").append(i + 1)
+          .append("\">").append(title).append("</h2>");
+      }
+    }
+    if (!hasTwo) {
+      sb.append("<a href=\"#_two\">[_two]</a>");
+    }
+    sb.append("\n</div>");
+    return sb.toString();
+  }
+
+}
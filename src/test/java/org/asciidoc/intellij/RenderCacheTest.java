@@ -0,0 +1,83 @@
+package org.asciidoc.intellij;
+
+import org.asciidoctor.log.LogRecord;
+import org.asciidoctor.log.Severity;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class RenderCacheTest {
+
+  @Test
+  public void shouldIgnoreOutdirInKey() {
+    assertEquals(RenderCache.key("text", "md", options("/tmp/a"), 1),
+      RenderCache.key("text", "md", options("/tmp/b"), 1));
+  }
+
+  @Test
+  public void shouldChangeKeyWithContentAndStamp() {
+    String key = RenderCache.key("text", "md", options("/tmp/a"), 1);
+    assertNotEquals(key, RenderCache.key("other", "md", options("/tmp/a"), 1));
+    assertNotEquals(key, RenderCache.key("text", "md2", options("/tmp/a"), 1));
+    assertNotEquals(key, RenderCache.key("text", "md", options("/tmp/a"), 2));
+  }
+
+  @Test
+  public void shouldServeHtmlOnlyForSameOutdir() {
+    RenderCache cache = new RenderCache(1024 * 1024);
+    cache.put("key", entry("/tmp/a"));
+    assertNotNull(cache.get("key", "/tmp/a"));
+    assertNull(cache.get("key", "/tmp/b"));
+    assertNotNull(cache.get("key", null));
+    assertEquals(2, cache.getHits());
+    assertEquals(1, cache.getMisses());
+    assertEquals("render cache: 2 hits, 1 misses (67% hits), 1 entries, 0.0 MB", cache.getSummary());
+  }
+
+  @Test
+  public void shouldCountPeekedLookupsOnlyWhenRecorded() {
+    RenderCache cache = new RenderCache(1024 * 1024);
+    cache.put("key", entry("/tmp/a"));
+    assertNull(cache.peek("other", null));
+    assertNotNull(cache.peek("key", null));
+    assertEquals(0, cache.getHits() + cache.getMisses());
+    cache.record(true);
+    assertEquals(1, cache.getHits());
+    assertEquals(0, cache.getMisses());
+  }
+
+  @Test
+  public void shouldEvictLeastRecentlyUsedEntries() {
+    RenderCache.Entry entry = entry(null);
+    RenderCache cache = new RenderCache(entry.getWeight() * 2);
+    cache.put("first", entry(null));
+    cache.put("second", entry(null));
+    cache.get("first", null);
+    cache.put("third", entry(null));
+    assertEquals(2, cache.size());
+    assertNull(cache.get("second", null));
+    assertNotNull(cache.get("first", null));
+  }
+
+  private static RenderCache.Entry entry(String outdir) {
+    return new RenderCache.Entry("<p>html</p>", Collections.singletonList(new LogRecord(Severity.WARN, "warning")),
+      "", "", outdir);
+  }
+
+  private static Map<String, Object> options(String outdir) {
+    Map<String, Object> attributes = new HashMap<>();
+    attributes.put("outdir", outdir);
+    attributes.put("env", "idea");
+    Map<String, Object> options = new HashMap<>();
+    options.put("attributes", attributes);
+    options.put("base_dir", "/project");
+    return options;
+  }
+}
@@ -0,0 +1,53 @@
+package org.asciidoc.intellij;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RenderTimingsTest {
+
+  private static final long MS = 1_000_000;
+
+  @Test
+  public void shouldCalculatePercentiles() {
+    RenderTimings timings = new RenderTimings(100, 10);
+    for (int i = 1; i <= 100; ++i) {
+      timings.record("a.adoc", RenderTimings.Stage.CONVERT, i * MS);
+    }
+    RenderTimings.Row row = timings.snapshot().get(0);
+    assertEquals(100, row.getCount());
+    assertEquals(50.0, row.getP50(), 0.001);
+    assertEquals(95.0, row.getP95(), 0.001);
+    assertEquals(100.0, row.getMax(), 0.001);
+  }
+
+  @Test
+  public void shouldKeepOnlyRecentSamples() {
+    RenderTimings timings = new RenderTimings(2, 10);
+    timings.record("a.adoc", RenderTimings.Stage.CONVERT, 100 * MS);
+    timings.record("a.adoc", RenderTimings.Stage.CONVERT, 1 * MS);
+    timings.record("a.adoc", RenderTimings.Stage.CONVERT, 2 * MS);
+    RenderTimings.Row row = timings.snapshot().get(0);
+    assertEquals(3, row.getCount());
+    assertEquals(2.0, row.getMax(), 0.001);
+  }
+
+  @Test
+  public void shouldListRecentFileFirstAndEvictOldest() {
+    RenderTimings timings = new RenderTimings(10, 2);
+    timings.record("a.adoc", RenderTimings.Stage.CONFIG, MS);
+    timings.record("b.adoc", RenderTimings.Stage.CONFIG, MS);
+    timings.record("b.adoc", RenderTimings.Stage.CONVERT, MS);
+    timings.record("c.adoc", RenderTimings.Stage.CONVERT, MS);
+    List<RenderTimings.Row> rows = timings.snapshot();
+    assertEquals(3, rows.size());
+    assertEquals("c.adoc", rows.get(0).getFile());
+    assertEquals("b.adoc", rows.get(1).getFile());
+    assertEquals(RenderTimings.Stage.CONFIG, rows.get(1).getStage());
+    assertEquals(RenderTimings.Stage.CONVERT, rows.get(2).getStage());
+    assertTrue(RenderTimings.format(rows).contains("c.adoc"));
+  }
+}
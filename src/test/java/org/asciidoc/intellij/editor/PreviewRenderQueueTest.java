@@ -0,0 +1,86 @@
+package org.asciidoc.intellij.editor;
+
+import com.intellij.testFramework.LightVirtualFile;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class PreviewRenderQueueTest {
+
+  private final List<Runnable> started = new ArrayList<>();
+
+  private final List<String> rendered = new ArrayList<>();
+
+  private PreviewRenderQueue queue;
+
+  @Before
+  public void setUp() {
+    queue = new PreviewRenderQueue(1, started::add);
+  }
+
+  @Test
+  public void shouldRenderFocusedPreviewFirst() {
+    LightVirtualFile focused = new LightVirtualFile("b.adoc");
+    queue.setFocusedFile(focused);
+    blockWorker();
+    queue.submit("a", new LightVirtualFile("a.adoc"), () -> true, () -> rendered.add("a"));
+    queue.submit("b", focused, () -> true, () -> rendered.add("b"));
+    queue.submit("c", new LightVirtualFile("c.adoc"), () -> true, () -> rendered.add("c"));
+    runAll();
+    assertEquals(Arrays.asList("b", "a", "c"), rendered);
+  }
+
+  @Test
+  public void shouldDeferHiddenPreviewUntilShown() {
+    boolean[] visible = {false};
+    queue.submit("a", null, () -> visible[0], () -> rendered.add("a"));
+    runAll();
+    assertEquals(Collections.emptyList(), rendered);
+    assertEquals(1, queue.size());
+
+    visible[0] = true;
+    queue.update();
+    runAll();
+    assertEquals(Collections.singletonList("a"), rendered);
+  }
+
+  @Test
+  public void shouldMergeRequestsOfSamePreview() {
+    blockWorker();
+    queue.submit("a", null, () -> true, () -> rendered.add("a1"));
+    queue.submit("b", null, () -> true, () -> rendered.add("b"));
+    queue.submit("a", null, () -> true, () -> rendered.add("a2"));
+    assertEquals(2, queue.size());
+    runAll();
+    assertEquals(Arrays.asList("a2", "b"), rendered);
+  }
+
+  @Test
+  public void shouldNotStartMoreRendersThanWorkers() {
+    queue.submit("a", null, () -> true, () -> rendered.add("a"));
+    queue.submit("b", null, () -> true, () -> rendered.add("b"));
+    assertEquals(1, started.size());
+    assertEquals(1, queue.size());
+  }
+
+  /**
+   * Occupy the only worker, so that the following requests wait in the queue.
+   */
+  private void blockWorker() {
+    queue.submit("blocker", null, () -> true, () -> {
+    });
+    assertEquals(1, started.size());
+  }
+
+  private void runAll() {
+    while (!started.isEmpty()) {
+      started.remove(0).run();
+    }
+  }
+}
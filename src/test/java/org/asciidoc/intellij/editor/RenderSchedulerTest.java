@@ -0,0 +1,80 @@
+package org.asciidoc.intellij.editor;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+
+public class RenderSchedulerTest {
+
+  private static final long MS = 1_000_000;
+
+  private final AtomicLong now = new AtomicLong();
+
+  private ScheduledThreadPoolExecutor executor;
+
+  private RenderScheduler scheduler;
+
+  @Before
+  public void setUp() {
+    executor = new ScheduledThreadPoolExecutor(1);
+    // the clock doesn't advance by itself, the delays are long enough that no render starts during the test
+    scheduler = new RenderScheduler("a.adoc", executor, Runnable::run, now::get, 20_000 * MS, 60_000 * MS, 0.5);
+  }
+
+  @After
+  public void tearDown() {
+    scheduler.dispose();
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void shouldWaitShortestQuietPeriodWithoutRenders() {
+    scheduler.execute(() -> true);
+    assertEquals(20_000 * MS, scheduler.nextStart());
+  }
+
+  @Test
+  public void shouldUseMedianOfRecentRendersAsQuietPeriod() {
+    scheduler.completed(30_000 * MS, 0);
+    scheduler.completed(40_000 * MS, 0);
+    scheduler.completed(120_000 * MS, 0);
+    assertEquals(40_000 * MS, scheduler.quietPeriod());
+    scheduler.completed(100_000 * MS, 0);
+    scheduler.completed(110_000 * MS, 0);
+    assertEquals(60_000 * MS, scheduler.quietPeriod());
+  }
+
+  @Test
+  public void shouldNotWaitLongerThanLongestQuietPeriodWhileChangesKeepComing() {
+    scheduler.completed(30_000 * MS, -1_000_000 * MS);
+    scheduler.execute(() -> true);
+    now.set(50_000 * MS);
+    scheduler.execute(() -> true);
+    assertEquals(60_000 * MS, scheduler.nextStart());
+  }
+
+  @Test
+  public void shouldWaitAfterSlowRenderToStayWithinCpuShare() {
+    scheduler.completed(100_000 * MS, 1_000_000 * MS);
+    now.set(1_000_000 * MS);
+    scheduler.execute(() -> true);
+    assertEquals(1_100_000 * MS, scheduler.nextStart());
+  }
+
+  @Test
+  public void shouldThrottleWithDefaultCpuShare() {
+    scheduler.dispose();
+    scheduler = new RenderScheduler("a.adoc", executor, Runnable::run, now::get, 20_000 * MS, 60_000 * MS,
+      RenderScheduler.defaultDuty());
+    // a render of 30 seconds is followed by a pause of 90 seconds to use a quarter of a core
+    scheduler.completed(30_000 * MS, 1_000_000 * MS);
+    now.set(1_000_000 * MS);
+    scheduler.execute(() -> true);
+    assertEquals(1_090_000 * MS, scheduler.nextStart());
+  }
+}
@@ -0,0 +1,106 @@
+package org.asciidoc.intellij.editor.javafx;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HtmlPostProcessorTest {
+
+  private Path imagesPath;
+
+  private Path baseFolder;
+
+  private String base;
+
+  @Before
+  public void setUp() throws IOException {
+    imagesPath = Files.createTempDirectory("asciidoctor-images");
+    baseFolder = Files.createTempDirectory("asciidoctor-base");
+    base = baseFolder.toString().replace('\\', '/').replace(":", "%3A");
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    for (Path folder : new Path[]{imagesPath, baseFolder}) {
+      try (Stream<Path> files = Files.walk(folder)) {
+        files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+      }
+    }
+  }
+
+  @Test
+  public void shouldRewriteImageOfDocumentFolder() {
+    String html = new HtmlPostProcessor(imagesPath, base, false, false)
+      .process("<p><img src=\"a.png\" alt=\"a\"></p>", null, null);
+    assertEquals("<p><img src=\"file://" + baseFolder.toString().replace('\\', '/') + "/a.png\" alt=\"a\"></p>", html);
+  }
+
+  @Test
+  public void shouldServeImageWithHashOfItsContent() throws IOException {
+    Files.write(baseFolder.resolve("a.png"), "a".getBytes(StandardCharsets.UTF_8));
+    String html = new HtmlPostProcessor(imagesPath, base, false, true)
+      .process("<img src=\"a.png\"><img src=\"b.png\">", null, null);
+    assertEquals("<img src=\"localfile://0cc175b9c0f1b6a831c399e269772661/" + base + "/a.png\">"
+      + "<img src=\"localfile://none/" + base + "/b.png\">", html);
+  }
+
+  @Test
+  public void shouldPreferGeneratedImage() throws IOException {
+    Files.write(imagesPath.resolve("diagram.png"), "a".getBytes(StandardCharsets.UTF_8));
+    String html = new HtmlPostProcessor(imagesPath, base, false, false)
+      .process("<img src=\"diagram.png\">", null, null);
+    assertEquals("<img src=\"file://" + imagesPath.resolve("diagram.png").toString().replace('\\', '/') + "\">", html);
+  }
+
+  @Test
+  public void shouldKeepUrlsWithProtocol() {
+    String input = "<img src=\"https://example.com/a.png\">";
+    assertEquals(input, new HtmlPostProcessor(imagesPath, base, false, false).process(input, null, null));
+  }
+
+  @Test
+  public void shouldRewriteManyImages() {
+    StringBuilder input = new StringBuilder();
+    for (int i = 0; i < 10_000; ++i) {
+      input.append("<img src=\"image-").append(i % 8).append(".png\">\n");
+    }
+    String html = new HtmlPostProcessor(imagesPath, base, false, false).process(input.toString(), null, null);
+    assertEquals(10_000, html.split("<img src=\"file://").length - 1);
+    assertTrue(html.endsWith("/image-7.png\">\n"));
+  }
+
+  @Test
+  public void shouldRemoveTwitterScript() {
+    String html = new HtmlPostProcessor(imagesPath, base, false, false).process("<p>a</p>"
+      + "<SCRIPT async src=\"https://platform.twitter.com/widgets.js\" charset=\"utf-8\"></script><p>b</p>", null, null);
+    assertEquals("<p>a</p><p>b</p>", html);
+  }
+
+  @Test
+  public void shouldRemoveColorsOfCodeInDarkTheme() {
+    String input = "<span style=\"color:#000;background-color:#fff0f0\">a</span>"
+      + "<span style=\"background-color:#fff;color:#D20;font-weight:bold\">b</span>";
+    assertEquals("<span style=\"\">a</span><span style=\"font-weight:bold\">b</span>",
+      new HtmlPostProcessor(imagesPath, base, true, false).process(input, null, null));
+    assertEquals(input, new HtmlPostProcessor(imagesPath, base, false, false).process(input, null, null));
+  }
+
+  @Test
+  public void shouldAddHeadAndScriptingLinesOnce() {
+    String html = new HtmlPostProcessor(imagesPath, base, false, false)
+      .process("<html><head></head><body><pre>&lt;head&gt;</pre><p><head></p></body></html>", "<style></style>",
+        "<script></script>");
+    assertEquals("<html><head><style></style></head><body><pre>&lt;head&gt;</pre><p><head></p>"
+      + "<script></script></body></html>", html);
+  }
+}
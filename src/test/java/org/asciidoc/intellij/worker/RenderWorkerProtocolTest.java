@@ -0,0 +1,69 @@
+package org.asciidoc.intellij.worker;
+
+import org.asciidoctor.log.LogRecord;
+import org.asciidoctor.log.Severity;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class RenderWorkerProtocolTest {
+
+  @Test
+  public void shouldTransferRequest() throws IOException {
+    Map<String, Object> attributes = new HashMap<>();
+    attributes.put("imagesdir", "images@");
+    attributes.put("icons", Boolean.FALSE);
+    Map<String, Object> options = new HashMap<>();
+    options.put("safe", 0);
+    options.put("attributes", attributes);
+    ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(buffer);
+    RenderWorkerProtocol.writeRequest(out, new RenderWorkerProtocol.Request(RenderWorkerProtocol.LOAD, "key",
+      Arrays.asList("a.rb", "b.rb"), options, "= Title\n\nText with \u00fcmlauts"));
+    RenderWorkerProtocol.writeRequest(out, new RenderWorkerProtocol.Request(RenderWorkerProtocol.CONVERT, "key",
+      Collections.emptyList(), Collections.emptyMap(), "second"));
+
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(buffer.toByteArray()));
+    RenderWorkerProtocol.Request request = RenderWorkerProtocol.readRequest(in);
+    assertEquals(RenderWorkerProtocol.LOAD, request.getKind());
+    assertEquals("key", request.getInstanceKey());
+    assertEquals(Arrays.asList("a.rb", "b.rb"), request.getExtensions());
+    assertEquals(options, request.getOptions());
+    assertEquals("= Title\n\nText with \u00fcmlauts", request.getText());
+    assertEquals("second", RenderWorkerProtocol.readRequest(in).getText());
+    assertNull(RenderWorkerProtocol.readRequest(in));
+  }
+
+  @Test
+  public void shouldTransferResponse() throws IOException {
+    ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    RenderWorkerProtocol.writeResponse(new DataOutputStream(buffer), new RenderWorkerProtocol.Response("<p>html</p>",
+      "out", "", null, 1024, Collections.singletonList(new LogRecord(Severity.WARN, "missing attribute"))));
+
+    RenderWorkerProtocol.Response response = RenderWorkerProtocol.readResponse(
+      new DataInputStream(new ByteArrayInputStream(buffer.toByteArray())));
+    assertEquals("<p>html</p>", response.getHtml());
+    assertEquals("out", response.getOut());
+    assertEquals("", response.getErr());
+    assertNull(response.getError());
+    assertEquals(1024, response.getUsedMemory());
+    List<LogRecord> logRecords = response.getLogRecords();
+    assertEquals(1, logRecords.size());
+    assertEquals(Severity.WARN, logRecords.get(0).getSeverity());
+    assertEquals("missing attribute", logRecords.get(0).getMessage());
+    assertNull(logRecords.get(0).getCursor());
+  }
+
+}